@@ -15,6 +15,17 @@ public class Action {
      */
     private static final HashMap<String, String[]> ACTION_MAP = new HashMap<String, String[]>();
 
+    /**
+     * Probability of the agent moving along the intended direction.
+     */
+    public static final double INTENDED_DIRECTION_PROB = 0.8;
+
+    /**
+     * Probability of the agent moving along each of the directions at right angles
+     * to the intended direction.
+     */
+    public static final double PERPENDICULAR_DIRECTION_PROB = 0.1;
+
     /**
      * Initialize the hash map between intended direction and the other
      * possible directions that the agent can choose.
@@ -52,13 +63,13 @@ public class Action {
         /**
          * Intended direction is chosen with a probability of 0.8.
          */
-        mDirectionProbMap.put(mIntendedDirection, 0.8);
+        mDirectionProbMap.put(mIntendedDirection, INTENDED_DIRECTION_PROB);
 
         /**
          * Unintended directions at either right angles can be chosen with a probability of 0.1 each.
          */
         for(String possibleDirection : ACTION_MAP.get(mIntendedDirection)){
-            mDirectionProbMap.put(possibleDirection, 0.1);
+            mDirectionProbMap.put(possibleDirection, PERPENDICULAR_DIRECTION_PROB);
         }
     }
 
@@ -74,4 +85,61 @@ public class Action {
     public String toString() {
         return mIntendedDirection;
     }
+
+    /**
+     * Given an action index (in the order UP, RIGHT, DOWN, LEFT) and the utilities of the cells
+     * reached by moving in each direction, return the expected utility of the action.
+     * @param action
+     * @param up
+     * @param right
+     * @param down
+     * @param left
+     * @return
+     */
+    static double getExpectedUtility(int action, double up, double right, double down, double left){
+        double p = INTENDED_DIRECTION_PROB;
+        double q = PERPENDICULAR_DIRECTION_PROB;
+
+        switch (action){
+            case 0: return p * up + q * (left + right);
+            case 1: return p * right + q * (up + down);
+            case 2: return p * down + q * (left + right);
+            default: return p * left + q * (up + down);
+        }
+    }
+
+    /**
+     * Probability of moving in the given direction when taking the given action, both as indices in the
+     * order UP, RIGHT, DOWN, LEFT. The agent never moves opposite to the intended direction.
+     * @param action
+     * @param direction
+     * @return
+     */
+    static double getDirectionProb(int action, int direction){
+        if(direction == action){
+            return INTENDED_DIRECTION_PROB;
+        }
+        return (direction + 2) % 4 == action ? 0.0 : PERPENDICULAR_DIRECTION_PROB;
+    }
+
+    /**
+     * Given the utilities of the cells reached by moving in each direction, return the maximum
+     * expected utility over the actions UP, RIGHT, DOWN and LEFT.
+     * @param up
+     * @param right
+     * @param down
+     * @param left
+     * @return
+     */
+    static double getMaximumExpectedUtility(double up, double right, double down, double left){
+        double p = INTENDED_DIRECTION_PROB;
+        double q = PERPENDICULAR_DIRECTION_PROB;
+
+        double upUtility = p * up + q * (left + right);
+        double rightUtility = p * right + q * (up + down);
+        double downUtility = p * down + q * (left + right);
+        double leftUtility = p * left + q * (up + down);
+
+        return Math.max(Math.max(upUtility, rightUtility), Math.max(downUtility, leftUtility));
+    }
 }
@@ -0,0 +1,221 @@
+public class AndersonSolver {
+
+    /**
+     * This class implements Value Iteration with Anderson acceleration.
+     * One sweep of Value Iteration is a map G from the current utility values to the next ones, and
+     * plain Value Iteration converges to its fixed point at the rate of the discount factor.
+     * Anderson acceleration keeps a short window of past iterates and residuals (G(U) - U), and
+     * extrapolates the next iterate from the combination of past sweeps which minimises the residual.
+     * If the residual grows after an extrapolated step, the window is discarded and a plain sweep is
+     * taken instead.
+     */
+
+    /**
+     * Number of past iterates used for extrapolation.
+     */
+    private static final int WINDOW_SIZE = 5;
+
+    /**
+     * Relative regularisation added to the least-squares problem to keep it well conditioned.
+     */
+    private static final double REGULARISATION = 1e-10;
+
+    private StateSpace mStateSpace;
+
+    private double mDiscountFactor;
+
+    /**
+     * Utility values of the states (see StateSpace) from the last solve.
+     */
+    private double[] mUtilities;
+
+    /**
+     * Statistics of the last solve.
+     */
+    private int mNumSweeps;
+    private int mNumFallbacks;
+
+    /**
+     * Constructor for the AndersonSolver object.
+     * @param stateSpace
+     * @param discountFactor
+     */
+    public AndersonSolver(StateSpace stateSpace, double discountFactor){
+        mStateSpace = stateSpace;
+        mDiscountFactor = discountFactor;
+    }
+
+    /**
+     * Accelerated Value Iteration. Stops once a sweep changes no utility value by more than epsilon,
+     * i.e. with the same convergence check as plain Value Iteration. Returns the number of sweeps.
+     * @param epsilon
+     * @return
+     */
+    public int valueIteration(double epsilon){
+        int numStates = mStateSpace.getNumStates();
+
+        double[] utilities = new double[numStates];
+        double[] swept = new double[numStates];
+        double[] residual = new double[numStates];
+
+        double[] previousSwept = new double[numStates];
+        double[] previousResidual = new double[numStates];
+
+        /**
+         * Differences between consecutive sweeps and consecutive residuals, kept in a ring buffer.
+         */
+        double[][] sweptDifferences = new double[WINDOW_SIZE][numStates];
+        double[][] residualDifferences = new double[WINDOW_SIZE][numStates];
+        int historySize = 0;
+        int historyHead = 0;
+
+        double previousResidualNorm = Double.POSITIVE_INFINITY;
+
+        mNumSweeps = 0;
+        mNumFallbacks = 0;
+
+        while(true){
+            mNumSweeps++;
+
+            /**
+             * Apply one plain sweep to the current iterate.
+             */
+            System.arraycopy(utilities, 0, swept, 0, numStates);
+            double residualNorm = mStateSpace.sweep(swept, null, mDiscountFactor);
+
+            if(residualNorm < epsilon){
+                System.arraycopy(swept, 0, utilities, 0, numStates);
+                break;
+            }
+
+            for(int k = 0; k < numStates; ++k){
+                residual[k] = swept[k] - utilities[k];
+            }
+
+            /**
+             * Safeguard: if the residual grew, the extrapolated step was not helpful, so forget the
+             * history and take a plain step.
+             */
+            if(residualNorm > previousResidualNorm){
+                mNumFallbacks++;
+                historySize = 0;
+                historyHead = 0;
+            }
+            else if(mNumSweeps > 1){
+                for(int k = 0; k < numStates; ++k){
+                    sweptDifferences[historyHead][k] = swept[k] - previousSwept[k];
+                    residualDifferences[historyHead][k] = residual[k] - previousResidual[k];
+                }
+                historyHead = (historyHead + 1) % WINDOW_SIZE;
+                historySize = Math.min(historySize + 1, WINDOW_SIZE);
+            }
+
+            System.arraycopy(swept, 0, previousSwept, 0, numStates);
+            System.arraycopy(residual, 0, previousResidual, 0, numStates);
+            previousResidualNorm = residualNorm;
+
+            /**
+             * Next iterate: the plain sweep, corrected by the least-squares combination of past differences.
+             */
+            System.arraycopy(swept, 0, utilities, 0, numStates);
+            if(historySize > 0){
+                double[] coefficients = getMixingCoefficients(residualDifferences, historySize, residual);
+                for(int h = 0; h < historySize; ++h){
+                    double[] sweptDifference = sweptDifferences[h];
+                    for(int k = 0; k < numStates; ++k){
+                        utilities[k] -= coefficients[h] * sweptDifference[k];
+                    }
+                }
+            }
+        }
+
+        mUtilities = utilities;
+        return mNumSweeps;
+    }
+
+    /**
+     * Solve the regularised least-squares problem min ||residual - sum_h c_h * residualDifferences[h]||
+     * via its normal equations, and return the coefficients c.
+     * @param residualDifferences
+     * @param historySize
+     * @param residual
+     * @return
+     */
+    private double[] getMixingCoefficients(double[][] residualDifferences, int historySize, double[] residual){
+        double[][] matrix = new double[historySize][historySize + 1];
+
+        double trace = 0.0;
+        for(int a = 0; a < historySize; ++a){
+            for(int b = a; b < historySize; ++b){
+                double dotProduct = dot(residualDifferences[a], residualDifferences[b]);
+                matrix[a][b] = dotProduct;
+                matrix[b][a] = dotProduct;
+            }
+            trace += matrix[a][a];
+            matrix[a][historySize] = dot(residualDifferences[a], residual);
+        }
+
+        if(trace == 0.0){
+            return new double[historySize];
+        }
+
+        /**
+         * The regularisation is scaled with the matrix, since the residuals shrink by many orders of magnitude.
+         */
+        for(int a = 0; a < historySize; ++a){
+            matrix[a][a] += REGULARISATION * trace / historySize;
+        }
+
+        /**
+         * Gaussian elimination with partial pivoting on the augmented matrix.
+         */
+        for(int col = 0; col < historySize; ++col){
+            int pivot = col;
+            for(int row = col + 1; row < historySize; ++row){
+                if(Math.abs(matrix[row][col]) > Math.abs(matrix[pivot][col])){
+                    pivot = row;
+                }
+            }
+            double[] pivotRow = matrix[pivot];
+            matrix[pivot] = matrix[col];
+            matrix[col] = pivotRow;
+
+            for(int row = col + 1; row < historySize; ++row){
+                double factor = matrix[row][col] / matrix[col][col];
+                for(int k = col; k <= historySize; ++k){
+                    matrix[row][k] -= factor * matrix[col][k];
+                }
+            }
+        }
+
+        double[] coefficients = new double[historySize];
+        for(int row = historySize - 1; row >= 0; --row){
+            double value = matrix[row][historySize];
+            for(int k = row + 1; k < historySize; ++k){
+                value -= matrix[row][k] * coefficients[k];
+            }
+            coefficients[row] = value / matrix[row][row];
+        }
+        return coefficients;
+    }
+
+    private static double dot(double[] a, double[] b){
+        double sum = 0.0;
+        for(int k = 0; k < a.length; ++k){
+            sum += a[k] * b[k];
+        }
+        return sum;
+    }
+
+    public double[] getUtilities() {
+        return mUtilities;
+    }
+
+    public int getNumSweeps() {
+        return mNumSweeps;
+    }
+
+    public int getNumFallbacks() {
+        return mNumFallbacks;
+    }
+}
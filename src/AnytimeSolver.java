@@ -0,0 +1,311 @@
+import java.util.concurrent.TimeUnit;
+
+public class AnytimeSolver {
+
+    /**
+     * This class runs Value Iteration under a budget: a wall-clock deadline, a number of Bellman backups,
+     * or both, and can be cancelled from another thread. Instead of sweeping until delta is below epsilon
+     * no matter how long it takes, the solve stops as soon as the next sweep would not fit in the budget,
+     * and returns the greedy policy of the utility values found so far, together with a bound on their
+     * error.
+     *
+     * Every in-place sweep is a contraction by the discount factor gamma towards the optimal utility
+     * values U*, so after a sweep that changed the utility values by at most delta,
+     *     |U - U*| <= delta * gamma / (1 - gamma)
+     * and the error of the utility values of the greedy policy is at most 2 * gamma / (1 - gamma) times
+     * that. A bound also shrinks by gamma with every sweep, so the smallest of the two is kept.
+     *
+     * The budget is checked between sweeps, using the duration of the slowest sweep so far to predict the
+     * next one, and keeping the time of one more sweep aside to extract the policy at the end. A pause of
+     * the JVM (e.g. for garbage collection) can still overrun the deadline, so a caller with a hard limit
+     * should leave a margin of a few milliseconds. Policy Iteration is
+     * not used here: the residual of its evaluation sweeps bounds the error of the current policy's utility
+     * values, not the distance to the optimal ones.
+     */
+
+    /**
+     * Reason why an anytime solve stopped.
+     */
+    public enum StopReason {
+        CONVERGED,
+        DEADLINE,
+        BACKUP_LIMIT,
+        CANCELLED
+    }
+
+    private StateSpace mStateSpace;
+
+    private double mDiscountFactor;
+
+    /**
+     * Constructor for the AnytimeSolver object.
+     * @param stateSpace
+     * @param discountFactor
+     */
+    public AnytimeSolver(StateSpace stateSpace, double discountFactor){
+        mStateSpace = stateSpace;
+        mDiscountFactor = discountFactor;
+    }
+
+    /**
+     * Value Iteration until delta is below epsilon, or until the budget runs out or is cancelled, from
+     * zero utility values. Returns the best solution found.
+     * @param epsilon
+     * @param budget
+     * @return
+     */
+    public Result valueIteration(double epsilon, Budget budget){
+        return valueIteration(epsilon, budget, null);
+    }
+
+    /**
+     * Value Iteration until delta is below epsilon, or until the budget runs out or is cancelled,
+     * warm-started from the given utility values (e.g. the solution of an earlier request), or from zero
+     * if they are null. Returns the best solution found. At least one sweep is always made, so that the
+     * result has a finite error bound.
+     * @param epsilon
+     * @param budget
+     * @param initialUtilities
+     * @return
+     */
+    public Result valueIteration(double epsilon, Budget budget, double[] initialUtilities){
+        long startTime = System.nanoTime();
+        int numStates = mStateSpace.getNumStates();
+        int numOpenStates = mStateSpace.getNumOpenStates();
+        double[] utilities = initialUtilities == null ? new double[numStates] : initialUtilities.clone();
+
+        double errorBound = Double.POSITIVE_INFINITY;
+        double delta = Double.POSITIVE_INFINITY;
+        int numSweeps = 0;
+        long maxSweepNanos = 0;
+        StopReason stopReason;
+
+        while(true){
+            if(numSweeps > 0){
+                if(delta < epsilon){
+                    stopReason = StopReason.CONVERGED;
+                    break;
+                }
+                if(budget.isCancelled()){
+                    stopReason = StopReason.CANCELLED;
+                    break;
+                }
+                if((long) (numSweeps + 1) * numOpenStates > budget.getMaxBackups()){
+                    stopReason = StopReason.BACKUP_LIMIT;
+                    break;
+                }
+                /**
+                 * One more sweep, and one for extracting the policy.
+                 */
+                if(budget.getDeadline() != Long.MAX_VALUE &&
+                        System.nanoTime() + 2 * maxSweepNanos - budget.getDeadline() > 0){
+                    stopReason = StopReason.DEADLINE;
+                    break;
+                }
+            }
+
+            long sweepStartTime = System.nanoTime();
+            delta = mStateSpace.sweep(utilities, null, mDiscountFactor);
+            maxSweepNanos = Math.max(maxSweepNanos, System.nanoTime() - sweepStartTime);
+            numSweeps++;
+
+            errorBound = Math.min(delta * mDiscountFactor / (1 - mDiscountFactor), errorBound * mDiscountFactor);
+        }
+
+        int[] policy = new int[numStates];
+        mStateSpace.improvePolicy(utilities, policy);
+
+        return new Result(utilities, policy, stopReason, numSweeps, (long) numSweeps * numOpenStates, delta,
+                errorBound, 2 * mDiscountFactor / (1 - mDiscountFactor) * errorBound, System.nanoTime() - startTime);
+    }
+
+    /**
+     * The limits of an anytime solve. A budget is created per request, and can be cancelled from any
+     * thread; the solve notices it before its next sweep.
+     */
+    public static class Budget {
+
+        /**
+         * Deadline in System.nanoTime() time, and largest number of Bellman backups (one per open state per
+         * sweep).
+         */
+        private final long mDeadline;
+        private final long mMaxBackups;
+
+        private volatile boolean mCancelled;
+
+        private Budget(long deadline, long maxBackups){
+            mDeadline = deadline;
+            mMaxBackups = maxBackups;
+        }
+
+        /**
+         * Budget with no limit, which only stops by convergence or cancellation.
+         * @return
+         */
+        public static Budget unlimited(){
+            return new Budget(Long.MAX_VALUE, Long.MAX_VALUE);
+        }
+
+        /**
+         * Budget ending the given time from now.
+         * @param timeLimit
+         * @param unit
+         * @return
+         */
+        public static Budget withTimeLimit(long timeLimit, TimeUnit unit){
+            checkLimit("time limit", timeLimit);
+            return new Budget(System.nanoTime() + unit.toNanos(timeLimit), Long.MAX_VALUE);
+        }
+
+        /**
+         * Budget of the given number of Bellman backups.
+         * @param maxBackups
+         * @return
+         */
+        public static Budget withBackupLimit(long maxBackups){
+            checkLimit("number of backups", maxBackups);
+            return new Budget(Long.MAX_VALUE, maxBackups);
+        }
+
+        /**
+         * Budget ending the given time from now, or after the given number of Bellman backups, whichever
+         * comes first.
+         * @param timeLimit
+         * @param unit
+         * @param maxBackups
+         * @return
+         */
+        public static Budget withLimits(long timeLimit, TimeUnit unit, long maxBackups){
+            checkLimit("time limit", timeLimit);
+            checkLimit("number of backups", maxBackups);
+            return new Budget(System.nanoTime() + unit.toNanos(timeLimit), maxBackups);
+        }
+
+        private static void checkLimit(String name, long limit){
+            if(limit < 0){
+                throw new IllegalArgumentException("The " + name + " must not be negative, not " + limit);
+            }
+        }
+
+        /**
+         * Ask the solve using this budget to stop before its next sweep.
+         */
+        public void cancel(){
+            mCancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        /**
+         * Deadline in System.nanoTime() time, or Long.MAX_VALUE if there is none.
+         * @return
+         */
+        public long getDeadline() {
+            return mDeadline;
+        }
+
+        public long getMaxBackups() {
+            return mMaxBackups;
+        }
+    }
+
+    /**
+     * The best solution found by an anytime solve.
+     */
+    public static class Result {
+
+        private final double[] mUtilities;
+        private final int[] mPolicy;
+        private final StopReason mStopReason;
+        private final int mNumSweeps;
+        private final long mNumBackups;
+        private final double mDelta;
+        private final double mErrorBound;
+        private final double mPolicyLossBound;
+        private final long mElapsedNanos;
+
+        private Result(double[] utilities, int[] policy, StopReason stopReason, int numSweeps, long numBackups,
+                       double delta, double errorBound, double policyLossBound, long elapsedNanos){
+            mUtilities = utilities;
+            mPolicy = policy;
+            mStopReason = stopReason;
+            mNumSweeps = numSweeps;
+            mNumBackups = numBackups;
+            mDelta = delta;
+            mErrorBound = errorBound;
+            mPolicyLossBound = policyLossBound;
+            mElapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Utility values by state index.
+         * @return
+         */
+        public double[] getUtilities() {
+            return mUtilities;
+        }
+
+        /**
+         * Greedy action of every state for the utility values.
+         * @return
+         */
+        public int[] getPolicy() {
+            return mPolicy;
+        }
+
+        public StopReason getStopReason() {
+            return mStopReason;
+        }
+
+        /**
+         * True if delta dropped below epsilon before the budget ran out.
+         * @return
+         */
+        public boolean isConverged() {
+            return mStopReason == StopReason.CONVERGED;
+        }
+
+        public int getNumSweeps() {
+            return mNumSweeps;
+        }
+
+        /**
+         * Number of Bellman backups of the sweeps, not counting the extraction of the policy.
+         * @return
+         */
+        public long getNumBackups() {
+            return mNumBackups;
+        }
+
+        /**
+         * Largest change in utility value of the last sweep.
+         * @return
+         */
+        public double getDelta() {
+            return mDelta;
+        }
+
+        /**
+         * Bound on the largest difference between the utility values and the optimal ones.
+         * @return
+         */
+        public double getErrorBound() {
+            return mErrorBound;
+        }
+
+        /**
+         * Bound on the largest loss in utility value from following the policy instead of an optimal one.
+         * @return
+         */
+        public double getPolicyLossBound() {
+            return mPolicyLossBound;
+        }
+
+        public long getElapsedNanos() {
+            return mElapsedNanos;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+import java.util.Arrays;
+
+public class BatchSolver {
+
+    /**
+     * This class solves many scenarios of the same wall layout at once with Value Iteration: one per
+     * discount factor, each with its own rewards. The utility values of all scenarios are stored as one
+     * block per state, with one lane per scenario (utilities[s * numLanes + lane]), so a sweep reads
+     * the four neighbour indices of a state once for all the scenarios, and the inner loop over the lanes
+     * is a plain loop over contiguous memory, which the JIT is free to vectorize.
+     * When a scenario converges its utility values are copied out and its lane is removed from the block,
+     * so the sweeps only cover the scenarios still converging. Every scenario gives exactly the result and
+     * number of iterations of solving it on its own.
+     */
+
+    private static final double P = Action.INTENDED_DIRECTION_PROB;
+    private static final double Q = Action.PERPENDICULAR_DIRECTION_PROB;
+
+    private CompactStateSpace mStateSpace;
+
+    private int mNumScenarios;
+
+    /**
+     * Discount factor and rewards by state index of every scenario.
+     */
+    private double[] mDiscountFactors;
+    private double[][] mScenarioRewards;
+
+    /**
+     * Scenario and discount factor of every lane still being solved. The number of lanes shrinks as the
+     * scenarios converge.
+     */
+    private int mNumLanes;
+    private int[] mLaneScenario;
+    private double[] mLaneDiscounts;
+
+    /**
+     * Rewards and utility values of every state in every lane, at [s * numLanes + lane].
+     */
+    private double[] mRewards;
+    private double[] mUtilities;
+
+    /**
+     * New utility values of the state being backed up, in every lane.
+     */
+    private double[] mStateUtilities;
+
+    /**
+     * Results of the last solve, by scenario.
+     */
+    private double[][] mScenarioUtilities;
+    private int[] mNumIterations;
+    private int mNumSweeps;
+
+    /**
+     * Constructor for the BatchSolver object. Takes the discount factor of every scenario, and the rewards
+     * of every scenario by state index. If rewards, or the rewards of a scenario, are null, the rewards of
+     * the state space are used. Every discount factor must be at least 0 and below 1, otherwise Value
+     * Iteration does not converge.
+     * @param stateSpace
+     * @param discountFactors
+     * @param rewards
+     */
+    public BatchSolver(CompactStateSpace stateSpace, double[] discountFactors, double[][] rewards){
+        mStateSpace = stateSpace;
+        mNumScenarios = discountFactors.length;
+        int numStates = stateSpace.getNumStates();
+
+        if(rewards != null && rewards.length != mNumScenarios){
+            throw new IllegalArgumentException("Expected rewards for " + mNumScenarios + " scenarios, found " + rewards.length);
+        }
+
+        mDiscountFactors = discountFactors.clone();
+        mScenarioRewards = new double[mNumScenarios][];
+
+        for(int scenario = 0; scenario < mNumScenarios; ++scenario){
+            double discountFactor = discountFactors[scenario];
+            if(!(discountFactor >= 0.0 && discountFactor < 1.0)){
+                throw new IllegalArgumentException("Discount factor of scenario " + scenario +
+                        " must be in [0, 1), not " + discountFactor);
+            }
+
+            double[] scenarioRewards = rewards == null ? null : rewards[scenario];
+            if(scenarioRewards != null && scenarioRewards.length != numStates){
+                throw new IllegalArgumentException("Expected " + numStates + " rewards for scenario " + scenario +
+                        ", found " + scenarioRewards.length);
+            }
+            mScenarioRewards[scenario] = new double[numStates];
+            for(int s = 0; s < numStates; ++s){
+                mScenarioRewards[scenario][s] = scenarioRewards == null ? stateSpace.getReward(s) : scenarioRewards[s];
+            }
+        }
+    }
+
+    /**
+     * Value Iteration on all scenarios, each until its largest change in utility value in a sweep is
+     * below epsilon. Returns the number of iterations of every scenario.
+     * @param epsilon
+     * @return
+     */
+    public int[] valueIteration(double epsilon){
+        int numStates = mStateSpace.getNumStates();
+
+        mNumLanes = mNumScenarios;
+        mLaneScenario = new int[mNumLanes];
+        mLaneDiscounts = new double[mNumLanes];
+        mRewards = new double[numStates * mNumLanes];
+        mUtilities = new double[numStates * mNumLanes];
+        for(int lane = 0; lane < mNumLanes; ++lane){
+            mLaneScenario[lane] = lane;
+            mLaneDiscounts[lane] = mDiscountFactors[lane];
+            for(int s = 0; s < numStates; ++s){
+                mRewards[s * mNumLanes + lane] = mScenarioRewards[lane][s];
+            }
+        }
+
+        mStateUtilities = new double[mNumLanes];
+        mScenarioUtilities = new double[mNumScenarios][];
+        mNumIterations = new int[mNumScenarios];
+        mNumSweeps = 0;
+
+        boolean[] converged = new boolean[mNumLanes];
+        double[] deltas = new double[mNumLanes];
+
+        while(mNumLanes > 0){
+            Arrays.fill(deltas, 0, mNumLanes, 0.0);
+            sweep(deltas);
+            mNumSweeps++;
+
+            int numConverged = 0;
+            for(int lane = 0; lane < mNumLanes; ++lane){
+                converged[lane] = deltas[lane] < epsilon;
+                if(converged[lane]){
+                    numConverged++;
+                    mNumIterations[mLaneScenario[lane]] = mNumSweeps;
+                    mScenarioUtilities[mLaneScenario[lane]] = getLane(lane);
+                }
+            }
+            if(numConverged > 0){
+                removeLanes(converged, mNumLanes - numConverged);
+            }
+        }
+
+        mRewards = null;
+        mUtilities = null;
+        return mNumIterations.clone();
+    }
+
+    /**
+     * Copy the lanes that have not converged into a smaller block, keeping their order. A lane leaves the
+     * block once, so the copies cost at most one sweep per scenario, and the remaining sweeps neither
+     * load nor store the converged lanes.
+     * @param converged
+     * @param numLanes
+     */
+    private void removeLanes(boolean[] converged, int numLanes){
+        int numStates = mStateSpace.getNumStates();
+        int[] lanes = new int[numLanes];
+        int[] laneScenario = new int[numLanes];
+        double[] laneDiscounts = new double[numLanes];
+        int newLane = 0;
+        for(int lane = 0; lane < mNumLanes; ++lane){
+            if(!converged[lane]){
+                lanes[newLane] = lane;
+                laneScenario[newLane] = mLaneScenario[lane];
+                laneDiscounts[newLane] = mLaneDiscounts[lane];
+                newLane++;
+            }
+        }
+
+        double[] rewards = new double[numStates * numLanes];
+        double[] utilities = new double[numStates * numLanes];
+        for(int s = 0; s < numStates; ++s){
+            for(int lane = 0; lane < numLanes; ++lane){
+                rewards[s * numLanes + lane] = mRewards[s * mNumLanes + lanes[lane]];
+                utilities[s * numLanes + lane] = mUtilities[s * mNumLanes + lanes[lane]];
+            }
+        }
+
+        mNumLanes = numLanes;
+        mLaneScenario = laneScenario;
+        mLaneDiscounts = laneDiscounts;
+        mRewards = rewards;
+        mUtilities = utilities;
+    }
+
+    /**
+     * One in-place Bellman optimality sweep over all states, in every lane.
+     * Stores the largest change in utility value of every lane into deltas.
+     * @param deltas
+     */
+    private void sweep(double[] deltas){
+        int numStates = mStateSpace.getNumStates();
+        int numLanes = mNumLanes;
+        double[] utilities = mUtilities;
+        double[] rewards = mRewards;
+        double[] discounts = mLaneDiscounts;
+        double[] stateUtilities = mStateUtilities;
+
+        for(int s = 0; s < numStates; ++s){
+            int base = s * numLanes;
+            int upBase = mStateSpace.getNeighbour(s, CompactStateSpace.UP) * numLanes;
+            int rightBase = mStateSpace.getNeighbour(s, CompactStateSpace.RIGHT) * numLanes;
+            int downBase = mStateSpace.getNeighbour(s, CompactStateSpace.DOWN) * numLanes;
+            int leftBase = mStateSpace.getNeighbour(s, CompactStateSpace.LEFT) * numLanes;
+
+            /**
+             * The new values are computed into a separate buffer first: a neighbour may be the state itself,
+             * and keeping the loads and stores of the block in separate loops leaves no aliasing between them.
+             */
+            for(int lane = 0; lane < numLanes; ++lane){
+                double up = utilities[upBase + lane];
+                double right = utilities[rightBase + lane];
+                double down = utilities[downBase + lane];
+                double left = utilities[leftBase + lane];
+
+                /**
+                 * Same arithmetic as Action.getMaximumExpectedUtility, so every lane matches a solve on its own.
+                 */
+                double upUtility = P * up + Q * (left + right);
+                double rightUtility = P * right + Q * (up + down);
+                double downUtility = P * down + Q * (left + right);
+                double leftUtility = P * left + Q * (up + down);
+                double expectedUtility = Math.max(Math.max(upUtility, rightUtility), Math.max(downUtility, leftUtility));
+
+                stateUtilities[lane] = rewards[base + lane] + discounts[lane] * expectedUtility;
+            }
+            for(int lane = 0; lane < numLanes; ++lane){
+                deltas[lane] = Math.max(deltas[lane], Math.abs(stateUtilities[lane] - utilities[base + lane]));
+                utilities[base + lane] = stateUtilities[lane];
+            }
+        }
+    }
+
+    /**
+     * Copy the utility values of one lane into an array by state index.
+     * @param lane
+     * @return
+     */
+    private double[] getLane(int lane){
+        double[] laneUtilities = new double[mStateSpace.getNumStates()];
+        for(int s = 0; s < laneUtilities.length; ++s){
+            laneUtilities[s] = mUtilities[s * mNumLanes + lane];
+        }
+        return laneUtilities;
+    }
+
+    /**
+     * Utility values of the given scenario by state index.
+     * @param scenario
+     * @return
+     */
+    public double[] getUtilities(int scenario){
+        return mScenarioUtilities[scenario];
+    }
+
+    /**
+     * Best action of every state in the given scenario.
+     * @param scenario
+     * @return
+     */
+    public int[] getPolicy(int scenario){
+        int[] policy = new int[mStateSpace.getNumStates()];
+        mStateSpace.improvePolicy(mScenarioUtilities[scenario], policy);
+        return policy;
+    }
+
+    public int getNumIterations(int scenario) {
+        return mNumIterations[scenario];
+    }
+
+    public int getNumScenarios() {
+        return mNumScenarios;
+    }
+
+    /**
+     * Number of sweeps over the block, i.e. the largest number of iterations of any scenario.
+     * @return
+     */
+    public int getNumSweeps() {
+        return mNumSweeps;
+    }
+}
@@ -0,0 +1,380 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+public class CompactStateSpace implements StateSpace {
+
+    /**
+     * This class is a compact representation of the non-walled states of a GridWorld.
+     * The non-walled cells are renumbered in row-major order into a dense index 0 .. numStates - 1,
+     * and walled cells are not stored at all. For every state, the index of the state reached by moving
+     * UP, RIGHT, DOWN and LEFT is precomputed. A move into a wall or off the grid leads back to the
+     * state itself, so no wall checks are needed when sweeping over the states.
+     * Memory and sweep time therefore scale with the number of open cells, not with the size of the grid.
+     * This is the state space of the two-dimensional solvers, which rely on the dense numbering of the
+     * open cells, on the rows of the grid or on the four neighbours. Its transition model is that of a
+     * two-dimensional GridSpace with a slip of 0.2 on both axes, but it is a separate representation, and
+     * its actions are numbered UP, RIGHT, DOWN, LEFT as in GridWorld rather than by axis.
+     */
+
+    /**
+     * Number of directions, and the offsets of each direction in the neighbour table.
+     */
+    public static final int NUM_DIRECTIONS = 4;
+    public static final int UP = 0;
+    public static final int RIGHT = 1;
+    public static final int DOWN = 2;
+    public static final int LEFT = 3;
+
+    /**
+     * Number of states from which the neighbour table is built in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private int mNumRows;
+    private int mNumCols;
+    private int mNumStates;
+
+    /**
+     * Row-major cell index (row * numCols + col) of every state, in increasing order.
+     */
+    private int[] mCells;
+
+    /**
+     * Reward of every state.
+     */
+    private double[] mRewards;
+
+    /**
+     * Index of the state reached from state s by moving in direction d is mNeighbours[s * NUM_DIRECTIONS + d].
+     */
+    private int[] mNeighbours;
+
+    /**
+     * Constructor for the CompactStateSpace object. Takes the number of rows and columns along with an
+     * array of rewards in row-major order, where a NaN reward marks a walled cell.
+     * @param numRows
+     * @param numCols
+     * @param rewardArray
+     */
+    public CompactStateSpace(int numRows, int numCols, double[] rewardArray){
+        mNumRows = numRows;
+        mNumCols = numCols;
+
+        int numCells = numRows * numCols;
+        mNumStates = 0;
+        for(int cell = 0; cell < numCells; ++cell){
+            if(!Double.isNaN(rewardArray[cell])){
+                mNumStates++;
+            }
+        }
+
+        mCells = new int[mNumStates];
+        mRewards = new double[mNumStates];
+
+        int s = 0;
+        for(int cell = 0; cell < numCells; ++cell){
+            if(!Double.isNaN(rewardArray[cell])){
+                mCells[s] = cell;
+                mRewards[s] = rewardArray[cell];
+                s++;
+            }
+        }
+
+        computeNeighbours();
+    }
+
+    /**
+     * Constructor for the CompactStateSpace object from the (row-major, increasing) cell index and the
+     * reward of every state, e.g. as produced tile by tile by a WorldGenerator.
+     * @param numRows
+     * @param numCols
+     * @param cells
+     * @param rewards
+     */
+    CompactStateSpace(int numRows, int numCols, int[] cells, double[] rewards){
+        mNumRows = numRows;
+        mNumCols = numCols;
+        mNumStates = cells.length;
+        mCells = cells;
+        mRewards = rewards;
+
+        computeNeighbours();
+    }
+
+    /**
+     * Fill in the neighbour table. Every row is matched against the rows above and below it with
+     * two pointers, so the table is built in time linear in the number of states. Rows are processed
+     * in parallel for large worlds.
+     */
+    private void computeNeighbours(){
+        mNeighbours = new int[mNumStates * NUM_DIRECTIONS];
+
+        int[] rowStart = new int[mNumRows + 1];
+        for(int row = 0; row <= mNumRows; ++row){
+            rowStart[row] = getFirstStateInRow(row);
+        }
+
+        IntStream rows = IntStream.range(0, mNumRows);
+        if(mNumStates >= PARALLEL_THRESHOLD){
+            rows = rows.parallel();
+        }
+        rows.forEach(row -> computeNeighbours(rowStart, row));
+    }
+
+    private void computeNeighbours(int[] rowStart, int row){
+        int firstState = rowStart[row];
+        int lastState = rowStart[row + 1];
+
+        /**
+         * Pointers into the rows above and below, advanced in step with the columns of this row.
+         */
+        int upper = row > 0 ? rowStart[row - 1] : firstState;
+        int lower = lastState;
+        int lowerEnd = row < mNumRows - 1 ? rowStart[row + 2] : lastState;
+
+        for(int s = firstState; s < lastState; ++s){
+            int cell = mCells[s];
+            int base = s * NUM_DIRECTIONS;
+
+            while(upper < firstState && mCells[upper] < cell - mNumCols){
+                upper++;
+            }
+            while(lower < lowerEnd && mCells[lower] < cell + mNumCols){
+                lower++;
+            }
+
+            mNeighbours[base + UP] = upper < firstState && mCells[upper] == cell - mNumCols ? upper : s;
+            mNeighbours[base + RIGHT] = s + 1 < lastState && mCells[s + 1] == cell + 1 ? s + 1 : s;
+            mNeighbours[base + DOWN] = lower < lowerEnd && mCells[lower] == cell + mNumCols ? lower : s;
+            mNeighbours[base + LEFT] = s > firstState && mCells[s - 1] == cell - 1 ? s - 1 : s;
+        }
+    }
+
+    /**
+     * Return the dense index of the state in the given row-major cell, or -1 if the cell is a wall.
+     * @param cell
+     * @return
+     */
+    public int getStateIndex(int cell){
+        int s = Arrays.binarySearch(mCells, cell);
+        return s < 0 ? -1 : s;
+    }
+
+    /**
+     * Return the index of the first state in the given row, or of the first state after it if the row
+     * has no open cells. For row == numRows, returns numStates.
+     * @param row
+     * @return
+     */
+    public int getFirstStateInRow(int row){
+        int s = Arrays.binarySearch(mCells, row * mNumCols);
+        return s < 0 ? -(s + 1) : s;
+    }
+
+    /**
+     * Expected utility of taking the given action (UP, RIGHT, DOWN or LEFT) in state s.
+     * @param utilities
+     * @param s
+     * @param action
+     * @return
+     */
+    public double getExpectedUtility(double[] utilities, int s, int action){
+        int base = s * NUM_DIRECTIONS;
+        return Action.getExpectedUtility(action, utilities[mNeighbours[base + UP]], utilities[mNeighbours[base + RIGHT]],
+                utilities[mNeighbours[base + DOWN]], utilities[mNeighbours[base + LEFT]]);
+    }
+
+    /**
+     * Maximum expected utility over all actions in state s.
+     * @param utilities
+     * @param s
+     * @return
+     */
+    public double getMaximumExpectedUtility(double[] utilities, int s){
+        int base = s * NUM_DIRECTIONS;
+        return Action.getMaximumExpectedUtility(utilities[mNeighbours[base + UP]], utilities[mNeighbours[base + RIGHT]],
+                utilities[mNeighbours[base + DOWN]], utilities[mNeighbours[base + LEFT]]);
+    }
+
+    /**
+     * Return the action with the maximum expected utility in state s. Near-ties are resolved in favour
+     * of the earlier action in the order UP, RIGHT, DOWN, LEFT.
+     * @param utilities
+     * @param s
+     * @return
+     */
+    public int getBestAction(double[] utilities, int s){
+        int bestAction = UP;
+        double maximumUtility = getExpectedUtility(utilities, s, UP);
+        for(int action = RIGHT; action < NUM_DIRECTIONS; ++action){
+            double expectedUtility = getExpectedUtility(utilities, s, action);
+            if(maximumUtility + ACTION_TIE_TOLERANCE < expectedUtility){
+                maximumUtility = expectedUtility;
+                bestAction = action;
+            }
+        }
+        return bestAction;
+    }
+
+    /**
+     * One in-place sweep over all states. If a policy is given, the sweep evaluates that policy,
+     * otherwise it applies the Bellman optimality update. Returns the largest change in utility value.
+     * @param utilities
+     * @param policy
+     * @param discountFactor
+     * @return
+     */
+    public double sweep(double[] utilities, int[] policy, double discountFactor){
+        return sweep(utilities, policy, discountFactor, 0, mNumStates);
+    }
+
+    /**
+     * One in-place sweep over the states firstState .. lastState - 1.
+     * Returns the largest change in utility value.
+     * @param utilities
+     * @param policy
+     * @param discountFactor
+     * @param firstState
+     * @param lastState
+     * @return
+     */
+    public double sweep(double[] utilities, int[] policy, double discountFactor, int firstState, int lastState){
+        double delta = 0.0;
+        for(int s = firstState; s < lastState; ++s){
+            double expectedUtility = policy == null ?
+                    getMaximumExpectedUtility(utilities, s) :
+                    getExpectedUtility(utilities, s, policy[s]);
+            double stateUtility = mRewards[s] + discountFactor * expectedUtility;
+
+            delta = Math.max(delta, Math.abs(stateUtility - utilities[s]));
+            utilities[s] = stateUtility;
+        }
+        return delta;
+    }
+
+    /**
+     * Single precision counterpart of sweep(double[], int[], double).
+     * @param utilities
+     * @param rewards
+     * @param policy
+     * @param discountFactor
+     * @return
+     */
+    public double sweep(float[] utilities, float[] rewards, int[] policy, float discountFactor){
+        float delta = 0.0f;
+        for(int s = 0; s < mNumStates; ++s){
+            int base = s * NUM_DIRECTIONS;
+            float up = utilities[mNeighbours[base + UP]];
+            float right = utilities[mNeighbours[base + RIGHT]];
+            float down = utilities[mNeighbours[base + DOWN]];
+            float left = utilities[mNeighbours[base + LEFT]];
+
+            float expectedUtility = (float) (policy == null ?
+                    Action.getMaximumExpectedUtility(up, right, down, left) :
+                    Action.getExpectedUtility(policy[s], up, right, down, left));
+            float stateUtility = rewards[s] + discountFactor * expectedUtility;
+
+            delta = Math.max(delta, Math.abs(stateUtility - utilities[s]));
+            utilities[s] = stateUtility;
+        }
+        return delta;
+    }
+
+    /**
+     * Store the best action for every state, given the utility values, into policy.
+     * @param utilities
+     * @param policy
+     */
+    public void improvePolicy(double[] utilities, int[] policy){
+        for(int s = 0; s < mNumStates; ++s){
+            policy[s] = getBestAction(utilities, s);
+        }
+    }
+
+    /**
+     * Initial policy for Policy Iteration, matching the one used by GridWorld: the first of
+     * UP, RIGHT, DOWN that does not lead into a wall or off the grid, and LEFT otherwise.
+     * @return
+     */
+    public int[] getInitialPolicy(){
+        int[] policy = new int[mNumStates];
+        for(int s = 0; s < mNumStates; ++s){
+            int base = s * NUM_DIRECTIONS;
+            if(mNeighbours[base + UP] != s){
+                policy[s] = UP;
+            }
+            else if(mNeighbours[base + RIGHT] != s){
+                policy[s] = RIGHT;
+            }
+            else if(mNeighbours[base + DOWN] != s){
+                policy[s] = DOWN;
+            }
+            else{
+                policy[s] = LEFT;
+            }
+        }
+        return policy;
+    }
+
+    /**
+     * Expand per-state utility values into an array over all cells in row-major order.
+     * Walled cells get a utility of 0.
+     * @param utilities
+     * @return
+     */
+    public double[] toGridArray(double[] utilities){
+        double[] gridArray = new double[mNumRows * mNumCols];
+        for(int s = 0; s < mNumStates; ++s){
+            gridArray[mCells[s]] = utilities[s];
+        }
+        return gridArray;
+    }
+
+    /**
+     * Expand per-state actions into an array over all cells in row-major order.
+     * Walled cells get an action of -1.
+     * @param policy
+     * @return
+     */
+    public int[] toGridArray(int[] policy){
+        int[] gridArray = new int[mNumRows * mNumCols];
+        Arrays.fill(gridArray, -1);
+        for(int s = 0; s < mNumStates; ++s){
+            gridArray[mCells[s]] = policy[s];
+        }
+        return gridArray;
+    }
+
+    public int getNumRows() {
+        return mNumRows;
+    }
+
+    public int getNumCols() {
+        return mNumCols;
+    }
+
+    public int getNumStates() {
+        return mNumStates;
+    }
+
+    /**
+     * Same as the number of states, since walled cells are left out.
+     * @return
+     */
+    @Override
+    public int getNumOpenStates() {
+        return mNumStates;
+    }
+
+    public int getCell(int s) {
+        return mCells[s];
+    }
+
+    public double getReward(int s) {
+        return mRewards[s];
+    }
+
+    public int getNeighbour(int s, int direction) {
+        return mNeighbours[s * NUM_DIRECTIONS + direction];
+    }
+}
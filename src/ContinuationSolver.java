@@ -0,0 +1,179 @@
+import java.util.ArrayList;
+import java.util.List;
+
+public class ContinuationSolver {
+
+    /**
+     * This class runs Value Iteration down a ladder of decreasing epsilon values in a single solve.
+     * Instead of starting again from zero utility values for every epsilon, the sweeps simply carry on, and
+     * every time delta drops below the next epsilon a snapshot of the utility values and the policy is taken.
+     * A sweep whose delta is below an epsilon is also below every larger one, so each snapshot is exactly the
+     * result, with the same number of iterations, of solving on its own with that epsilon, and the whole
+     * ladder costs as many sweeps as the solve with the smallest epsilon.
+     */
+
+    private StateSpace mStateSpace;
+
+    private double mDiscountFactor;
+
+    /**
+     * Strictly decreasing epsilon values, one snapshot is taken at each.
+     */
+    private double[] mEpsilons;
+
+    /**
+     * Snapshots of the last solve, one per epsilon.
+     */
+    private List<Step> mSteps;
+
+    /**
+     * Index of the first step from which the policy did not change any more, in the last solve.
+     */
+    private int mStableStep;
+
+    /**
+     * Constructor for the ContinuationSolver object. The epsilon values must be strictly decreasing, and
+     * there must be at least one.
+     * @param stateSpace
+     * @param discountFactor
+     * @param epsilons
+     */
+    public ContinuationSolver(StateSpace stateSpace, double discountFactor, double[] epsilons){
+        if(epsilons.length == 0){
+            throw new IllegalArgumentException("At least one epsilon value is needed");
+        }
+        for(int k = 1; k < epsilons.length; ++k){
+            if(!(epsilons[k] < epsilons[k - 1])){
+                throw new IllegalArgumentException("Epsilon values must be strictly decreasing, found " +
+                        epsilons[k - 1] + " followed by " + epsilons[k]);
+            }
+        }
+        mStateSpace = stateSpace;
+        mDiscountFactor = discountFactor;
+        mEpsilons = epsilons.clone();
+        mSteps = new ArrayList<Step>();
+    }
+
+    /**
+     * Value Iteration from zero utility values until delta is below every epsilon, taking a snapshot at
+     * each one. Returns the snapshots, one per epsilon.
+     * @return
+     */
+    public List<Step> valueIteration(){
+        double[] epsilons = mEpsilons;
+        int numStates = mStateSpace.getNumStates();
+        double[] utilities = new double[numStates];
+        mSteps = new ArrayList<Step>(epsilons.length);
+        mStableStep = 0;
+
+        int numSweeps = 0;
+        int[] lastPolicy = null;
+        while(mSteps.size() < epsilons.length){
+            double delta = mStateSpace.sweep(utilities, null, mDiscountFactor);
+            numSweeps++;
+
+            /**
+             * One sweep may satisfy several epsilon values at once.
+             */
+            while(mSteps.size() < epsilons.length && delta < epsilons[mSteps.size()]){
+                int[] policy = new int[numStates];
+                mStateSpace.improvePolicy(utilities, policy);
+
+                int numPolicyChanges = lastPolicy == null ? 0 : PrecisionSolver.countDifferences(lastPolicy, policy);
+                if(numPolicyChanges != 0){
+                    mStableStep = mSteps.size();
+                }
+                mSteps.add(new Step(epsilons[mSteps.size()], numSweeps, delta, utilities.clone(), policy, numPolicyChanges));
+                lastPolicy = policy;
+            }
+        }
+        return mSteps;
+    }
+
+    /**
+     * Snapshots of the last solve, one per epsilon.
+     * @return
+     */
+    public List<Step> getSteps() {
+        return mSteps;
+    }
+
+    /**
+     * Return the first step from which the policy did not change any more, up to the smallest epsilon,
+     * in the last solve, or null before the first solve.
+     * @return
+     */
+    public Step getStableStep() {
+        return mSteps.isEmpty() ? null : mSteps.get(mStableStep);
+    }
+
+    /**
+     * Total number of sweeps of the last solve, i.e. the number of iterations of the smallest epsilon.
+     * @return
+     */
+    public int getNumSweeps() {
+        return mSteps.isEmpty() ? 0 : mSteps.get(mSteps.size() - 1).getNumIterations();
+    }
+
+    /**
+     * The solution at one epsilon of the ladder.
+     */
+    public static class Step {
+
+        private final double mEpsilon;
+        private final int mNumIterations;
+        private final double mDelta;
+        private final double[] mUtilities;
+        private final int[] mPolicy;
+        private final int mNumPolicyChanges;
+
+        private Step(double epsilon, int numIterations, double delta, double[] utilities, int[] policy, int numPolicyChanges){
+            mEpsilon = epsilon;
+            mNumIterations = numIterations;
+            mDelta = delta;
+            mUtilities = utilities;
+            mPolicy = policy;
+            mNumPolicyChanges = numPolicyChanges;
+        }
+
+        public double getEpsilon() {
+            return mEpsilon;
+        }
+
+        /**
+         * Number of sweeps from zero utility values until delta was below epsilon.
+         * @return
+         */
+        public int getNumIterations() {
+            return mNumIterations;
+        }
+
+        public double getDelta() {
+            return mDelta;
+        }
+
+        /**
+         * Utility values by state index. Not to be modified.
+         * @return
+         */
+        public double[] getUtilities() {
+            return mUtilities;
+        }
+
+        /**
+         * Best action of every state. Not to be modified.
+         * @return
+         */
+        public int[] getPolicy() {
+            return mPolicy;
+        }
+
+        /**
+         * Number of states whose action differs from the previous step (0 for the first step).
+         * @return
+         */
+        public int getNumPolicyChanges() {
+            return mNumPolicyChanges;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+import java.util.Arrays;
+
+public class DataSeries {
+
+    /**
+     * This class stores a named series of (x, y) data points for graph plotting.
+     * It does not depend on any charting library, so that the solvers can record data without
+     * loading JFreeChart. GridUIUtils converts it into a chart series when the UI is displayed.
+     */
+
+    private String mName;
+
+    private double[] mXValues;
+    private double[] mYValues;
+    private int mItemCount;
+
+    /**
+     * Constructor for the DataSeries object. It takes the name of the series as argument.
+     * @param name
+     */
+    public DataSeries(String name){
+        mName = name;
+        mXValues = new double[16];
+        mYValues = new double[16];
+        mItemCount = 0;
+    }
+
+    public void add(double x, double y){
+        if(mItemCount == mXValues.length){
+            mXValues = Arrays.copyOf(mXValues, 2 * mItemCount);
+            mYValues = Arrays.copyOf(mYValues, 2 * mItemCount);
+        }
+        mXValues[mItemCount] = x;
+        mYValues[mItemCount] = y;
+        mItemCount++;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public int getItemCount() {
+        return mItemCount;
+    }
+
+    public double getX(int index) {
+        return mXValues[index];
+    }
+
+    public double getY(int index) {
+        return mYValues[index];
+    }
+}
@@ -0,0 +1,337 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+public class DistributedSolver {
+
+    /**
+     * This class coordinates distributed Value Iteration over a GridWorld.
+     * The GridWorld is split into rectangular tiles, and every tile is swept by a separate
+     * worker process (see TileWorker). The workers connect to the coordinator over local sockets.
+     * After every sweep, the coordinator collects the boundary rows and columns of all tiles,
+     * reduces the largest change in utility value for the convergence check, and sends every
+     * worker the halo it needs for the next sweep.
+     *
+     * A worker that fails to start, crashes or stops answering makes the solve fail with an IOException
+     * naming the tile, instead of blocking the coordinator.
+     */
+
+    /**
+     * Longest time to wait for all the workers to connect, and for any single reply from a worker.
+     */
+    private static final int TIMEOUT_MILLIS = 60000;
+
+    /**
+     * Interval at which the workers are checked while waiting for them to connect.
+     */
+    private static final int ACCEPT_POLL_MILLIS = 200;
+
+    private int mNumRows;
+    private int mNumCols;
+
+    /**
+     * Rewards for the cells in the GridWorld in row-major order. A NaN reward marks a walled cell.
+     */
+    private double[] mRewardArray;
+
+    private double mDiscountFactor;
+
+    /**
+     * Number of sweeps performed in the last call to solve.
+     */
+    private int mNumIterations;
+
+    /**
+     * Constructor for the DistributedSolver object.
+     * @param numRows
+     * @param numCols
+     * @param rewardArray
+     * @param discountFactor
+     */
+    public DistributedSolver(int numRows, int numCols, double[] rewardArray, double discountFactor){
+        mNumRows = numRows;
+        mNumCols = numCols;
+        mRewardArray = rewardArray;
+        mDiscountFactor = discountFactor;
+    }
+
+    /**
+     * Run Value Iteration with the GridWorld split into numTileRows x numTileCols tiles, each owned
+     * by its own worker process. Returns the utility values of all cells in row-major order
+     * (walled cells have a utility of 0).
+     * @param numTileRows
+     * @param numTileCols
+     * @param epsilon
+     * @return
+     * @throws IOException
+     */
+    public double[] solve(int numTileRows, int numTileCols, double epsilon) throws IOException {
+        if(numTileRows < 1 || numTileRows > mNumRows || numTileCols < 1 || numTileCols > mNumCols){
+            throw new IllegalArgumentException("Cannot split a " + mNumRows + "x" + mNumCols +
+                    " GridWorld into " + numTileRows + "x" + numTileCols + " tiles");
+        }
+
+        int numTiles = numTileRows * numTileCols;
+
+        /**
+         * Row and column boundaries of the tiles. Tile (r, c) covers rows [rowStart[r], rowStart[r + 1])
+         * and columns [colStart[c], colStart[c + 1]).
+         */
+        int[] rowStart = new int[numTileRows + 1];
+        int[] colStart = new int[numTileCols + 1];
+        for(int r = 0; r <= numTileRows; ++r){
+            rowStart[r] = r * mNumRows / numTileRows;
+        }
+        for(int c = 0; c <= numTileCols; ++c){
+            colStart[c] = c * mNumCols / numTileCols;
+        }
+
+        Process[] workers = new Process[numTiles];
+        Socket[] sockets = new Socket[numTiles];
+        DataInputStream[] inputs = new DataInputStream[numTiles];
+        DataOutputStream[] outputs = new DataOutputStream[numTiles];
+
+        double[] utilityArray = new double[mNumRows * mNumCols];
+
+        ServerSocket serverSocket = new ServerSocket(0, numTiles, InetAddress.getLoopbackAddress());
+        boolean finished = false;
+        try{
+            /**
+             * Launch one worker JVM per tile and wait for all of them to connect back.
+             */
+            for(int t = 0; t < numTiles; ++t){
+                workers[t] = launchWorker(serverSocket.getLocalPort(), t);
+            }
+            serverSocket.setSoTimeout(ACCEPT_POLL_MILLIS);
+            long connectDeadline = System.nanoTime() + TIMEOUT_MILLIS * 1000000L;
+            for(int t = 0; t < numTiles; ++t){
+                Socket socket = null;
+                while(socket == null){
+                    try{
+                        socket = serverSocket.accept();
+                    } catch (SocketTimeoutException e){
+                        checkWorkers(workers);
+                        if(System.nanoTime() - connectDeadline > 0){
+                            throw new IOException("Only " + t + " of " + numTiles + " worker processes connected within " +
+                                    TIMEOUT_MILLIS + " ms");
+                        }
+                    }
+                }
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(TIMEOUT_MILLIS);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                int tileIndex = in.readInt();
+
+                sockets[tileIndex] = socket;
+                inputs[tileIndex] = in;
+                outputs[tileIndex] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            }
+
+            for(int t = 0; t < numTiles; ++t){
+                int r = t / numTileCols;
+                int c = t % numTileCols;
+                sendTile(outputs[t], rowStart[r], rowStart[r + 1], colStart[c], colStart[c + 1]);
+            }
+
+            /**
+             * Boundary rows and columns received from each tile in the last sweep.
+             */
+            double[][] topEdges = new double[numTiles][];
+            double[][] bottomEdges = new double[numTiles][];
+            double[][] leftEdges = new double[numTiles][];
+            double[][] rightEdges = new double[numTiles][];
+
+            mNumIterations = 0;
+            while(true){
+                mNumIterations++;
+                double delta = 0.0;
+
+                for(int t = 0; t < numTiles; ++t){
+                    int height = rowStart[t / numTileCols + 1] - rowStart[t / numTileCols];
+                    int width = colStart[t % numTileCols + 1] - colStart[t % numTileCols];
+
+                    delta = Math.max(delta, inputs[t].readDouble());
+                    topEdges[t] = readDoubles(inputs[t], width);
+                    bottomEdges[t] = readDoubles(inputs[t], width);
+                    leftEdges[t] = readDoubles(inputs[t], height);
+                    rightEdges[t] = readDoubles(inputs[t], height);
+                }
+
+                /**
+                 * Check for convergence of utility values across all the tiles.
+                 */
+                boolean converged = delta < epsilon;
+
+                for(int t = 0; t < numTiles; ++t){
+                    int r = t / numTileCols;
+                    int c = t % numTileCols;
+                    DataOutputStream out = outputs[t];
+
+                    out.writeBoolean(converged);
+                    if(!converged){
+                        /**
+                         * The halo of a tile is made up of the facing edges of its neighbouring tiles.
+                         * Halo cells outside the GridWorld are walls, so their values are never read.
+                         */
+                        int height = rowStart[r + 1] - rowStart[r];
+                        int width = colStart[c + 1] - colStart[c];
+                        writeDoubles(out, r > 0 ? bottomEdges[t - numTileCols] : null, width);
+                        writeDoubles(out, r < numTileRows - 1 ? topEdges[t + numTileCols] : null, width);
+                        writeDoubles(out, c > 0 ? rightEdges[t - 1] : null, height);
+                        writeDoubles(out, c < numTileCols - 1 ? leftEdges[t + 1] : null, height);
+                    }
+                    out.flush();
+                }
+
+                if(converged){
+                    break;
+                }
+            }
+
+            /**
+             * Gather the final utility values of every tile.
+             */
+            for(int t = 0; t < numTiles; ++t){
+                int r = t / numTileCols;
+                int c = t % numTileCols;
+                for(int i = rowStart[r]; i < rowStart[r + 1]; ++i){
+                    for(int j = colStart[c]; j < colStart[c + 1]; ++j){
+                        utilityArray[i * mNumCols + j] = inputs[t].readDouble();
+                    }
+                }
+            }
+            finished = true;
+        } catch (SocketTimeoutException e){
+            checkWorkers(workers);
+            throw new IOException("No reply from a worker process within " + TIMEOUT_MILLIS + " ms", e);
+        } catch (IOException e){
+            /**
+             * A worker that died closes its socket, usually just before its process can be seen to have
+             * exited, so give it a moment and report the worker rather than the broken stream.
+             */
+            long checkDeadline = System.nanoTime() + ACCEPT_POLL_MILLIS * 5 * 1000000L;
+            while(System.nanoTime() - checkDeadline < 0){
+                checkWorkers(workers);
+                try{
+                    Thread.sleep(ACCEPT_POLL_MILLIS / 4);
+                } catch (InterruptedException interrupted){
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            throw new IOException("Lost the connection to a worker process (" + e + ")", e);
+        } finally {
+            for(Socket socket : sockets){
+                if(socket != null){
+                    socket.close();
+                }
+            }
+            serverSocket.close();
+            for(Process worker : workers){
+                if(worker != null){
+                    if(!finished){
+                        worker.destroyForcibly();
+                        continue;
+                    }
+                    try{
+                        if(!worker.waitFor(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)){
+                            worker.destroyForcibly();
+                        }
+                    } catch (InterruptedException e){
+                        worker.destroyForcibly();
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+
+        return utilityArray;
+    }
+
+    /**
+     * Throw an IOException naming the first worker process that has failed, if any.
+     * @param workers
+     * @throws IOException
+     */
+    private static void checkWorkers(Process[] workers) throws IOException {
+        for(int t = 0; t < workers.length; ++t){
+            if(workers[t] != null && !workers[t].isAlive() && workers[t].exitValue() != 0){
+                throw new IOException("Worker process for tile " + t + " exited with code " +
+                        workers[t].exitValue() + " before the solve finished");
+            }
+        }
+    }
+
+    /**
+     * Start a worker JVM for the given tile, using the same Java installation and class path
+     * as the current process.
+     * @param port
+     * @param tileIndex
+     * @return
+     * @throws IOException
+     */
+    private Process launchWorker(int port, int tileIndex) throws IOException {
+        String javaBinary = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder processBuilder = new ProcessBuilder(javaBinary,
+                "-cp", System.getProperty("java.class.path"),
+                "TileWorker",
+                InetAddress.getLoopbackAddress().getHostAddress(),
+                Integer.toString(port),
+                Integer.toString(tileIndex));
+        processBuilder.inheritIO();
+        return processBuilder.start();
+    }
+
+    /**
+     * Send the size of a tile, the discount factor and the rewards for the tile including its halo.
+     * @param out
+     * @param firstRow
+     * @param lastRow
+     * @param firstCol
+     * @param lastCol
+     * @throws IOException
+     */
+    private void sendTile(DataOutputStream out, int firstRow, int lastRow, int firstCol, int lastCol) throws IOException {
+        out.writeInt(lastRow - firstRow);
+        out.writeInt(lastCol - firstCol);
+        out.writeDouble(mDiscountFactor);
+
+        for(int i = firstRow - 1; i <= lastRow; ++i){
+            for(int j = firstCol - 1; j <= lastCol; ++j){
+                if(i < 0 || i >= mNumRows || j < 0 || j >= mNumCols){
+                    out.writeDouble(Double.NaN);
+                }
+                else{
+                    out.writeDouble(mRewardArray[i * mNumCols + j]);
+                }
+            }
+        }
+        out.flush();
+    }
+
+    private static double[] readDoubles(DataInputStream in, int count) throws IOException {
+        double[] values = new double[count];
+        for(int i = 0; i < count; ++i){
+            values[i] = in.readDouble();
+        }
+        return values;
+    }
+
+    private static void writeDoubles(DataOutputStream out, double[] values, int count) throws IOException {
+        for(int i = 0; i < count; ++i){
+            out.writeDouble(values == null ? 0.0 : values[i]);
+        }
+    }
+
+    public int getNumIterations() {
+        return mNumIterations;
+    }
+}
@@ -0,0 +1,536 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+public class GridSpace implements StateSpace {
+
+    /**
+     * This class is an N-dimensional grid world, e.g. a 3-D volume, stored with strided flat indexing:
+     * the cell with coordinates (x0, x1, ..., xN-1) has index x0 * stride0 + ... + xN-1, where the last
+     * axis varies fastest. Every cell is a state (walled cells are simply never updated), so no index
+     * table is needed, and the cell reached by a move is found by adding the stride of its axis.
+     * For every cell, one byte holds its reward code (an index into a small table of reward values, with 0
+     * for walls) and one char holds a bit per action which is set if the move leads into a wall or off the
+     * grid, so sweeps need no bounds or wall checks and cost 11 bytes per cell in double precision.
+     *
+     * There are two actions per axis: action 2a moves down axis a, and action 2a + 1 moves up axis a.
+     * Every axis has its own slip probability: a move along axis a goes in the intended direction with
+     * probability 1 - slip(a), and slips into each of the 2(N-1) directions perpendicular to it with
+     * probability slip(a) / (2(N-1)). A move into a wall or off the grid leaves the agent where it is.
+     * With two axes and a slip of 0.2 on both, this is the transition model of GridWorld; in a
+     * one-dimensional world a slip leaves the agent where it is.
+     */
+
+    /**
+     * Largest number of axes, limited by the number of bits in the blocked move masks.
+     */
+    public static final int MAX_DIMENSIONS = 8;
+
+    /**
+     * Slip probability of every axis in GridWorld.
+     */
+    public static final double DEFAULT_SLIP = 2 * Action.PERPENDICULAR_DIRECTION_PROB;
+
+    /**
+     * Reward code of a walled cell.
+     */
+    static final int WALL = 0;
+
+    /**
+     * Largest number of distinct rewards, limited by the size of the reward codes.
+     */
+    private static final int MAX_REWARD_VALUES = 255;
+
+    /**
+     * Number of cells from which the blocked move masks are computed in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private int[] mShape;
+    private int[] mStrides;
+    private int mNumDimensions;
+    private int mNumActions;
+    private int mNumCells;
+    private int mNumOpenCells;
+
+    /**
+     * Slip probability of every axis, and the resulting probability of the intended direction, of every
+     * perpendicular direction, and of staying in place (one-dimensional worlds only), for moves along it.
+     */
+    private double[] mAxisSlip;
+    private double[] mIntendedProbs;
+    private double[] mPerpendicularProbs;
+    private double[] mStayProbs;
+
+    /**
+     * Offset of the cell index for every action.
+     */
+    private int[] mOffsets;
+
+    /**
+     * Reward code of every cell, and the reward of every code. Code WALL marks a walled cell.
+     */
+    private byte[] mCodes;
+    private double[] mRewardValues;
+
+    /**
+     * Bit d of mBlocked[c] is set if action d in cell c leads into a wall or off the grid.
+     */
+    private char[] mBlocked;
+
+    /**
+     * Constructor for the GridSpace object. Takes the size of every axis, an array of rewards with strided
+     * indexing where a NaN reward marks a walled cell, and the slip probability of every axis. There may be
+     * at most 255 distinct rewards.
+     * @param shape
+     * @param rewardArray
+     * @param axisSlip
+     */
+    public GridSpace(int[] shape, double[] rewardArray, double[] axisSlip){
+        initializeShape(shape, axisSlip);
+        if(rewardArray.length != mNumCells){
+            throw new IllegalArgumentException("Expected " + mNumCells + " rewards, found " + rewardArray.length);
+        }
+
+        /**
+         * Collect the distinct rewards. Worlds have few of them, so a linear search is fast enough.
+         */
+        double[] rewardValues = new double[MAX_REWARD_VALUES + 1];
+        rewardValues[WALL] = Double.NaN;
+        int numRewardValues = 1;
+        mCodes = new byte[mNumCells];
+
+        int lastCode = WALL;
+        for(int c = 0; c < mNumCells; ++c){
+            double reward = rewardArray[c];
+            if(Double.isNaN(reward)){
+                continue;
+            }
+            if(rewardValues[lastCode] != reward){
+                lastCode = 1;
+                while(lastCode < numRewardValues && rewardValues[lastCode] != reward){
+                    lastCode++;
+                }
+                if(lastCode == numRewardValues){
+                    if(numRewardValues > MAX_REWARD_VALUES){
+                        throw new IllegalArgumentException("More than " + MAX_REWARD_VALUES + " distinct rewards");
+                    }
+                    rewardValues[numRewardValues++] = reward;
+                }
+            }
+            mCodes[c] = (byte) lastCode;
+        }
+        mRewardValues = Arrays.copyOf(rewardValues, numRewardValues);
+
+        computeBlocked();
+        mNumOpenCells = countOpenCells();
+    }
+
+    /**
+     * Constructor for the GridSpace object from the reward code of every cell and the reward of every code,
+     * e.g. as produced by a WorldGenerator. Code 0 marks a walled cell.
+     * @param shape
+     * @param codes
+     * @param rewardValues
+     * @param axisSlip
+     */
+    GridSpace(int[] shape, byte[] codes, double[] rewardValues, double[] axisSlip){
+        initializeShape(shape, axisSlip);
+        mCodes = codes;
+        mRewardValues = rewardValues.clone();
+        mRewardValues[WALL] = Double.NaN;
+
+        computeBlocked();
+        mNumOpenCells = countOpenCells();
+    }
+
+    private void initializeShape(int[] shape, double[] axisSlip){
+        mNumDimensions = shape.length;
+        if(mNumDimensions < 1 || mNumDimensions > MAX_DIMENSIONS){
+            throw new IllegalArgumentException("Expected 1 to " + MAX_DIMENSIONS + " axes, found " + mNumDimensions);
+        }
+        if(axisSlip.length != mNumDimensions){
+            throw new IllegalArgumentException("Expected the slip of " + mNumDimensions + " axes, found " + axisSlip.length);
+        }
+
+        mShape = shape.clone();
+        mStrides = new int[mNumDimensions];
+        long numCells = 1;
+        for(int a = mNumDimensions - 1; a >= 0; --a){
+            if(mShape[a] < 1){
+                throw new IllegalArgumentException("Axis " + a + " has size " + mShape[a]);
+            }
+            mStrides[a] = (int) numCells;
+            numCells *= mShape[a];
+            if(numCells > Integer.MAX_VALUE - 8){
+                throw new IllegalArgumentException("Too many cells in a " + Arrays.toString(mShape) + " GridSpace");
+            }
+        }
+        mNumCells = (int) numCells;
+        mNumActions = 2 * mNumDimensions;
+
+        mAxisSlip = axisSlip.clone();
+        mIntendedProbs = new double[mNumDimensions];
+        mPerpendicularProbs = new double[mNumDimensions];
+        mStayProbs = new double[mNumDimensions];
+        for(int a = 0; a < mNumDimensions; ++a){
+            if(!(mAxisSlip[a] >= 0 && mAxisSlip[a] <= 1)){
+                throw new IllegalArgumentException("Slip of axis " + a + " must be between 0 and 1, found " + mAxisSlip[a]);
+            }
+            mIntendedProbs[a] = 1 - mAxisSlip[a];
+            if(mNumDimensions > 1){
+                mPerpendicularProbs[a] = mAxisSlip[a] / (2 * (mNumDimensions - 1));
+            }
+            else{
+                mStayProbs[a] = mAxisSlip[a];
+            }
+        }
+
+        mOffsets = new int[mNumActions];
+        for(int a = 0; a < mNumDimensions; ++a){
+            mOffsets[2 * a] = -mStrides[a];
+            mOffsets[2 * a + 1] = mStrides[a];
+        }
+    }
+
+    /**
+     * Fill in the blocked move masks, one line along the last axis at a time. Lines are processed in
+     * parallel for large worlds.
+     */
+    private void computeBlocked(){
+        mBlocked = new char[mNumCells];
+
+        int lineLength = mShape[mNumDimensions - 1];
+        IntStream lines = IntStream.range(0, mNumCells / lineLength);
+        if(mNumCells >= PARALLEL_THRESHOLD){
+            lines = lines.parallel();
+        }
+        lines.forEach(line -> computeBlocked(line, lineLength));
+    }
+
+    private void computeBlocked(int line, int lineLength){
+        int lastAxis = mNumDimensions - 1;
+
+        /**
+         * Moves along the other axes that leave the grid are the same for the whole line.
+         */
+        int lineBlocked = 0;
+        int rest = line;
+        for(int a = lastAxis - 1; a >= 0; --a){
+            int coordinate = rest % mShape[a];
+            rest /= mShape[a];
+            if(coordinate == 0){
+                lineBlocked |= 1 << (2 * a);
+            }
+            if(coordinate == mShape[a] - 1){
+                lineBlocked |= 1 << (2 * a + 1);
+            }
+        }
+
+        int firstCell = line * lineLength;
+        for(int k = 0; k < lineLength; ++k){
+            int c = firstCell + k;
+            int blocked = lineBlocked;
+            if(k == 0){
+                blocked |= 1 << (2 * lastAxis);
+            }
+            if(k == lineLength - 1){
+                blocked |= 1 << (2 * lastAxis + 1);
+            }
+            for(int d = 0; d < mNumActions; ++d){
+                if((blocked & (1 << d)) == 0 && mCodes[c + mOffsets[d]] == WALL){
+                    blocked |= 1 << d;
+                }
+            }
+            mBlocked[c] = (char) blocked;
+        }
+    }
+
+    /**
+     * Return the action that moves along the given axis, up the axis if forward is set.
+     * @param axis
+     * @param forward
+     * @return
+     */
+    public static int getAction(int axis, boolean forward){
+        return 2 * axis + (forward ? 1 : 0);
+    }
+
+    /**
+     * Return the cell index of the given coordinates.
+     * @param coordinates
+     * @return
+     */
+    public int getCell(int... coordinates){
+        int c = 0;
+        for(int a = 0; a < mNumDimensions; ++a){
+            c += coordinates[a] * mStrides[a];
+        }
+        return c;
+    }
+
+    /**
+     * Return the coordinates of the given cell.
+     * @param c
+     * @return
+     */
+    public int[] getCoordinates(int c){
+        int[] coordinates = new int[mNumDimensions];
+        for(int a = 0; a < mNumDimensions; ++a){
+            coordinates[a] = c / mStrides[a];
+            c %= mStrides[a];
+        }
+        return coordinates;
+    }
+
+    /**
+     * Return the cell reached from cell c by the given action if the move succeeds, which is c itself if
+     * the move leads into a wall or off the grid.
+     * @param c
+     * @param action
+     * @return
+     */
+    public int getNeighbour(int c, int action){
+        return (mBlocked[c] & (1 << action)) != 0 ? c : c + mOffsets[action];
+    }
+
+    /**
+     * Gather the utility values of the cells reached from cell c by every action into next, and return the
+     * utility value of c. A blocked move has its offset masked to 0 rather than a branch, since walls are
+     * scattered at random and the branch could not be predicted.
+     */
+    private double gatherNext(double[] utilities, int c, double[] next){
+        int blocked = mBlocked[c];
+        for(int d = 0; d < mNumActions; ++d){
+            next[d] = utilities[c + (mOffsets[d] & (((blocked >> d) & 1) - 1))];
+        }
+        return utilities[c];
+    }
+
+    private double gatherNext(float[] utilities, int c, double[] next){
+        int blocked = mBlocked[c];
+        for(int d = 0; d < mNumActions; ++d){
+            next[d] = utilities[c + (mOffsets[d] & (((blocked >> d) & 1) - 1))];
+        }
+        return utilities[c];
+    }
+
+    /**
+     * Expected utility of the given action, from the utility values of the cells reached by every action
+     * and of the cell itself.
+     * @param next
+     * @param utility
+     * @param action
+     * @return
+     */
+    private double getExpectedUtility(double[] next, double utility, int action){
+        int axis = action >> 1;
+        return mIntendedProbs[axis] * next[action] + getSlipUtility(next, utility, axis);
+    }
+
+    /**
+     * Expected utility of slipping during a move along the given axis, which is the same for both
+     * directions along it. The sum over the perpendicular directions is taken in axis order, so with two
+     * axes the result is exactly that of CompactStateSpace.
+     */
+    private double getSlipUtility(double[] next, double utility, int axis){
+        double perpendicular = 0.0;
+        for(int b = 0; b < mNumDimensions; ++b){
+            if(b != axis){
+                perpendicular += next[2 * b] + next[2 * b + 1];
+            }
+        }
+        return mPerpendicularProbs[axis] * perpendicular + mStayProbs[axis] * utility;
+    }
+
+    /**
+     * Maximum expected utility over all actions.
+     * @param next
+     * @param utility
+     * @return
+     */
+    private double getMaximumExpectedUtility(double[] next, double utility){
+        double maximumUtility = Double.NEGATIVE_INFINITY;
+        for(int axis = 0; axis < mNumDimensions; ++axis){
+            double slipUtility = getSlipUtility(next, utility, axis);
+            double intendedProb = mIntendedProbs[axis];
+            maximumUtility = Math.max(maximumUtility, Math.max(intendedProb * next[2 * axis] + slipUtility,
+                    intendedProb * next[2 * axis + 1] + slipUtility));
+        }
+        return maximumUtility;
+    }
+
+    /**
+     * Expected utility of taking the given action in cell c.
+     * @param utilities
+     * @param c
+     * @param action
+     * @return
+     */
+    public double getExpectedUtility(double[] utilities, int c, int action){
+        double[] next = new double[mNumActions];
+        double utility = gatherNext(utilities, c, next);
+        return getExpectedUtility(next, utility, action);
+    }
+
+    /**
+     * Return the action with the maximum expected utility in cell c, or -1 for a walled cell. Near-ties
+     * are resolved in favour of the earlier action.
+     * @param utilities
+     * @param c
+     * @return
+     */
+    public int getBestAction(double[] utilities, int c){
+        return isWall(c) ? -1 : getBestAction(utilities, c, new double[mNumActions]);
+    }
+
+    private int getBestAction(double[] utilities, int c, double[] next){
+        double utility = gatherNext(utilities, c, next);
+        int bestAction = 0;
+        double maximumUtility = getExpectedUtility(next, utility, 0);
+        for(int action = 1; action < mNumActions; ++action){
+            double expectedUtility = getExpectedUtility(next, utility, action);
+            if(maximumUtility + ACTION_TIE_TOLERANCE < expectedUtility){
+                maximumUtility = expectedUtility;
+                bestAction = action;
+            }
+        }
+        return bestAction;
+    }
+
+    @Override
+    public double sweep(double[] utilities, int[] policy, double discountFactor){
+        double[] next = new double[mNumActions];
+        double delta = 0.0;
+        for(int c = 0; c < mNumCells; ++c){
+            int code = mCodes[c] & 0xFF;
+            if(code == WALL){
+                continue;
+            }
+            double utility = gatherNext(utilities, c, next);
+            double expectedUtility = policy == null ?
+                    getMaximumExpectedUtility(next, utility) :
+                    getExpectedUtility(next, utility, policy[c]);
+            double stateUtility = mRewardValues[code] + discountFactor * expectedUtility;
+
+            delta = Math.max(delta, Math.abs(stateUtility - utility));
+            utilities[c] = stateUtility;
+        }
+        return delta;
+    }
+
+    @Override
+    public double sweep(float[] utilities, float[] rewards, int[] policy, float discountFactor){
+        double[] next = new double[mNumActions];
+        float delta = 0.0f;
+        for(int c = 0; c < mNumCells; ++c){
+            if(mCodes[c] == WALL){
+                continue;
+            }
+            double utility = gatherNext(utilities, c, next);
+            float expectedUtility = (float) (policy == null ?
+                    getMaximumExpectedUtility(next, utility) :
+                    getExpectedUtility(next, utility, policy[c]));
+            float stateUtility = rewards[c] + discountFactor * expectedUtility;
+
+            delta = Math.max(delta, Math.abs(stateUtility - utilities[c]));
+            utilities[c] = stateUtility;
+        }
+        return delta;
+    }
+
+    /**
+     * Store the best action for every cell, given the utility values, into policy. Walled cells get -1.
+     * @param utilities
+     * @param policy
+     */
+    @Override
+    public void improvePolicy(double[] utilities, int[] policy){
+        double[] next = new double[mNumActions];
+        for(int c = 0; c < mNumCells; ++c){
+            policy[c] = isWall(c) ? -1 : getBestAction(utilities, c, next);
+        }
+    }
+
+    /**
+     * Initial policy for Policy Iteration: the first action that does not lead into a wall or off the grid,
+     * or the last action if there is none. Walled cells get -1.
+     * @return
+     */
+    @Override
+    public int[] getInitialPolicy(){
+        int[] policy = new int[mNumCells];
+        for(int c = 0; c < mNumCells; ++c){
+            if(isWall(c)){
+                policy[c] = -1;
+                continue;
+            }
+            int action = 0;
+            while(action < mNumActions - 1 && (mBlocked[c] & (1 << action)) != 0){
+                action++;
+            }
+            policy[c] = action;
+        }
+        return policy;
+    }
+
+    /**
+     * Number of states, i.e. of cells, including walled cells.
+     * @return
+     */
+    @Override
+    public int getNumStates() {
+        return mNumCells;
+    }
+
+    private int countOpenCells(){
+        int numOpenCells = 0;
+        for(int c = 0; c < mNumCells; ++c){
+            if(mCodes[c] != WALL){
+                numOpenCells++;
+            }
+        }
+        return numOpenCells;
+    }
+
+    /**
+     * Number of non-walled cells, which are the only ones backed up in a sweep.
+     * @return
+     */
+    @Override
+    public int getNumOpenStates() {
+        return mNumOpenCells;
+    }
+
+    public int getNumOpenCells() {
+        return mNumOpenCells;
+    }
+
+    @Override
+    public double getReward(int c) {
+        return mRewardValues[mCodes[c] & 0xFF];
+    }
+
+    public boolean isWall(int c) {
+        return mCodes[c] == WALL;
+    }
+
+    public int[] getShape() {
+        return mShape.clone();
+    }
+
+    public int getNumDimensions() {
+        return mNumDimensions;
+    }
+
+    public int getNumActions() {
+        return mNumActions;
+    }
+
+    public int getStride(int axis) {
+        return mStrides[axis];
+    }
+
+    public double getAxisSlip(int axis) {
+        return mAxisSlip[axis];
+    }
+}
@@ -15,18 +15,22 @@ import org.jfree.ui.RefineryUtilities;
 import javax.swing.*;
 import javax.swing.border.LineBorder;
 import java.awt.*;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 
 public class GridUIUtils {
 
     /**
-     * Method to display the GridWord UI to show the optimal policy and utility values.
+     * Action icons scaled for the GridWorld UI, in the order UP, RIGHT, DOWN, LEFT.
+     */
+    private static final ImageIcon[] ACTION_ICONS = new ImageIcon[4];
+
+    /**
+     * Method to display the GridWord UI to show the optimal policy and utility values of a solution.
      * @param title
-     * @param actionMap
+     * @param snapshot
      * @param gridWorld
      */
-    public static void displayWorld(String title, HashMap<State, Action> actionMap, GridWorld gridWorld, int xCoord, int yCoord){
+    public static void displayWorld(String title, SolutionSnapshot snapshot, GridWorld gridWorld, int xCoord, int yCoord){
         JFrame frame = new JFrame();
 
         JPanel panel = new JPanel();
@@ -40,7 +44,6 @@ public class GridUIUtils {
         int numCols = gridWorld.getNumCols();
 
         State[][] stateGrid = gridWorld.getStateGrid();
-        HashMap<State, Double> utilityMap = gridWorld.getUtilityMap();
 
         panel.setLayout(new GridLayout(numRows, numCols));
 
@@ -62,7 +65,7 @@ public class GridUIUtils {
 
 
                 Double stateReward = cellState.getReward();
-                Double stateUtility = utilityMap.get(cellState);
+                Double stateUtility = snapshot.getUtility(i, j);
 
                 if(stateReward == 1){
                     cellPanel.setBackground(Color.GREEN);
@@ -76,9 +79,9 @@ public class GridUIUtils {
                 rewardLabel.setHorizontalAlignment(JLabel.RIGHT);
                 cellPanel.add(rewardLabel,BorderLayout.NORTH);
 
-                if(actionMap.size() != 0){
+                if(snapshot.getAction(i, j) >= 0){
                     JLabel imageLabel = new JLabel();
-                    ImageIcon actionIcon = getActionIcon(cellState, actionMap);
+                    ImageIcon actionIcon = getActionIcon(snapshot.getAction(i, j));
                     imageLabel.setIcon(actionIcon);
                     imageLabel.setHorizontalAlignment(JLabel.CENTER);
                     cellPanel.add(imageLabel, BorderLayout.CENTER);
@@ -99,7 +102,7 @@ public class GridUIUtils {
      * @param title
      * @param dataMap
      */
-    public static void displayLineChart(String title, LinkedHashMap<State, XYSeries> dataMap){
+    public static void displayLineChart(String title, LinkedHashMap<State, DataSeries> dataMap){
         ApplicationFrame applicationFrame = new ApplicationFrame(title);
         JFreeChart xyLineChart = ChartFactory.createXYLineChart(
                 "Iterations v/s Estimated Utility",
@@ -135,36 +138,44 @@ public class GridUIUtils {
      * @param dataMap
      * @return
      */
-    private static XYDataset createDataSet(LinkedHashMap<State, XYSeries> dataMap){
+    private static XYDataset createDataSet(LinkedHashMap<State, DataSeries> dataMap){
         XYSeriesCollection dataSet = new XYSeriesCollection();
-        for(XYSeries seriesIterator : dataMap.values()){
-            dataSet.addSeries(seriesIterator);
+        for(DataSeries seriesIterator : dataMap.values()){
+            XYSeries xySeries = new XYSeries(seriesIterator.getName());
+            for(int i = 0; i < seriesIterator.getItemCount(); ++i){
+                xySeries.add(seriesIterator.getX(i), seriesIterator.getY(i));
+            }
+            dataSet.addSeries(xySeries);
         }
         return dataSet;
     }
 
     /**
-     * Helper method for displaying the GridWorld UI.
-     * @param state
-     * @param actionMap
+     * Helper method for displaying the GridWorld UI. The icons are read and scaled once, on first use.
+     * @param action
      * @return
      */
-    private static ImageIcon getActionIcon(State state, HashMap<State, Action> actionMap) {
-        Action stateAction = actionMap.get(state);
-
-        switch (stateAction.getIntendedAction()){
-            case "UP": {
-                return new ImageIcon(new ImageIcon("images/up.png").getImage().getScaledInstance(30, 30, Image.SCALE_SMOOTH));
+    private static ImageIcon getActionIcon(int action) {
+        switch (action){
+            case 0: {
+                return getScaledIcon(0, "images/up.png");
             }
-            case "RIGHT": {
-                return new ImageIcon(new ImageIcon("images/right.png").getImage().getScaledInstance(30, 30, Image.SCALE_SMOOTH));
+            case 1: {
+                return getScaledIcon(1, "images/right.png");
             }
-            case "DOWN": {
-                return new ImageIcon(new ImageIcon("images/down.png").getImage().getScaledInstance(30, 30, Image.SCALE_SMOOTH));
+            case 2: {
+                return getScaledIcon(2, "images/down.png");
             }
             default: {
-                return new ImageIcon(new ImageIcon("images/left.png").getImage().getScaledInstance(30, 30, Image.SCALE_SMOOTH));
+                return getScaledIcon(3, "images/left.png");
             }
         }
     }
+
+    private static synchronized ImageIcon getScaledIcon(int index, String iconFile){
+        if(ACTION_ICONS[index] == null){
+            ACTION_ICONS[index] = new ImageIcon(new ImageIcon(iconFile).getImage().getScaledInstance(30, 30, Image.SCALE_SMOOTH));
+        }
+        return ACTION_ICONS[index];
+    }
 }
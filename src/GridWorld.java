@@ -1,8 +1,12 @@
-import org.jfree.data.xy.XYSeries;
-
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.lang.Math;
 import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class GridWorld {
 
@@ -15,6 +19,11 @@ public class GridWorld {
      */
     private static final double DISCOUNT_FACTOR = 0.99;
 
+    /**
+     * Largest number of frames per second shown by a live view.
+     */
+    private static final double LIVE_FRAMES_PER_SECOND = 30;
+
     /**
      * An array of all the possible actions that the agent can take in the environment.
      */
@@ -31,35 +40,79 @@ public class GridWorld {
      * Hash Map between state and the action to be taken in that state.
      * (Used for Policy Iteration.)
      */
-    public HashMap<State, Action> mPolicyIterationMap;
+    private HashMap<State, Action> mPolicyIterationMap;
 
     /**
      * Hash Map between state and the best action that cab be taken in that state.
      * (Used for Value Iteration.)
      */
-    public HashMap<State, Action> mValueIterationMap;
+    private HashMap<State, Action> mValueIterationMap;
 
     /**
      * Hash Map between state and the utility value for that state.
      */
     private HashMap<State, Double> mUtilityMap;
 
+    /**
+     * Immutable copies of the solution of the last Policy Iteration and Value Iteration, and of the last
+     * solve of either kind (see SolutionSnapshot), published together through a single reference. The maps
+     * above are only touched by the solving thread, while these may be read from any thread.
+     */
+    private final AtomicReference<PublishedSolutions> mSolutions;
+
+    /**
+     * Version number of the last snapshot published.
+     */
+    private final AtomicLong mSnapshotVersion = new AtomicLong();
+
     /**
      * The GridWorld can be represented by a 2-D array of State Objects.
      */
     private State[][] mStateGrid;
 
     /**
-     * Data structures to store data for graph plotting.
+     * Compact representation of the non-walled states, used by the array-based solvers.
+     * Built on first use.
+     */
+    private CompactStateSpace mStateSpace;
+
+    /**
+     * Solver for point queries, which keeps its utility values between queries. Built on first use.
      */
-    private LinkedHashMap<State, XYSeries> mPIDataMap;
-    private LinkedHashMap<State, XYSeries> mVIDataMap;
+    private PointQuerySolver mPointQuerySolver;
+
+    /**
+     * Whether Policy Iteration and Value Iteration open a live view of their progress (off by default).
+     */
+    private boolean mShowLiveView;
+
+    /**
+     * Receives the progress of the solve in progress for a live view, while mShowLiveView is set.
+     * The utility values and actions by state index are copied into the two arrays first, and
+     * mLiveDelta holds the delta of the last sweep.
+     */
+    private SolutionPublisher mLivePublisher;
+    private double[] mLiveUtilities;
+    private int[] mLivePolicy;
+    private double mLiveDelta;
+
+    /**
+     * Data structures to store data for graph plotting. Only filled in when the UI is displayed,
+     * so that no charting classes are needed when running headless.
+     */
+    private LinkedHashMap<State, DataSeries> mPIDataMap;
+    private LinkedHashMap<State, DataSeries> mVIDataMap;
 
     /**
      * Counter to keep track of number of iterations for Policy Evaluation.
      */
     private int numPolicyEvalIter;
 
+    /**
+     * Performance metrics of the last Policy Iteration or Value Iteration.
+     */
+    private SolverMetrics mMetrics;
+
     /**
      * Overloaded constructor for the class. Takes in the number of rows (assumes the GridWorld is a square)
      * and an array of rewards for the states in the GridWorld, as arguments.
@@ -87,14 +140,16 @@ public class GridWorld {
         mValueIterationMap = new HashMap<State, Action>();
         mUtilityMap = new HashMap<State, Double>();
 
-        mVIDataMap = new LinkedHashMap<State, XYSeries>();
-        mPIDataMap = new LinkedHashMap<State, XYSeries>();
+        mVIDataMap = new LinkedHashMap<State, DataSeries>();
+        mPIDataMap = new LinkedHashMap<State, DataSeries>();
 
         initializeWorld(rewardArray);
         initializeUtilityMap();
         initializePolicyMap();
+        mSolutions = new AtomicReference<>(new PublishedSolutions(mUtilityMap, mPolicyIterationMap));
 
         numPolicyEvalIter = 0;
+        mMetrics = new SolverMetrics();
     }
 
     /**
@@ -188,7 +243,7 @@ public class GridWorld {
             for(int j = 0; j < mNumCols; ++j){
                 State state = mStateGrid[i][j];
                 if(!state.isWall()){
-                    XYSeries dataSeries = new XYSeries("(" + i + ", " + j + ")");
+                    DataSeries dataSeries = new DataSeries("(" + i + ", " + j + ")");
                     dataSeries.add(0,0);
                     mPIDataMap.put(state, dataSeries);
                 }
@@ -205,7 +260,7 @@ public class GridWorld {
             for(int j = 0; j < mNumCols; ++j){
                 State state = mStateGrid[i][j];
                 if(!state.isWall()){
-                    XYSeries dataSeries = new XYSeries("(" + i + ", " + j + ")");
+                    DataSeries dataSeries = new DataSeries("(" + i + ", " + j + ")");
                     dataSeries.add(0,0);
                     mVIDataMap.put(state, dataSeries);
                 }
@@ -231,6 +286,7 @@ public class GridWorld {
             numPolicyEvalIter++;
             numIterations++;
             double delta = 0.0;
+            mMetrics.beginSweep();
 
             for(State stateIterator : mUtilityMap.keySet()){
                 /**
@@ -252,6 +308,8 @@ public class GridWorld {
 
                 mUtilityMap.put(stateIterator, stateUtility);
             }
+            mMetrics.endSweep(mUtilityMap.size(), delta);
+            publishProgress(numPolicyEvalIter, delta, mPolicyIterationMap, false);
 
             /**
              * Check whether utility values have converged up to the specified precision value.
@@ -271,10 +329,12 @@ public class GridWorld {
      * @return HashMap<State, Action> newPolicyMap
      */
     private HashMap<State, Action> policyImprovement(){
+        mMetrics.beginImprovement();
         HashMap<State, Action> newPolicyMap = new HashMap<State, Action>();
         for(State stateIterator : mPolicyIterationMap.keySet()){
             newPolicyMap.put(stateIterator, getBestAction(stateIterator));
         }
+        mMetrics.endImprovement(newPolicyMap.size());
         return newPolicyMap;
     }
 
@@ -282,7 +342,13 @@ public class GridWorld {
      * Policy Iteration to calculate optimal values and utility values.
      */
     public int policyIteration(boolean displayUI, boolean giveFeedback, double epsilon){
-        initializePIDataGrid();
+        mMetrics.beginSolve("Policy Iteration");
+        if(displayUI){
+            initializePIDataGrid();
+        }
+        if(mShowLiveView){
+            openLiveView("Policy Iteration", 0, 0);
+        }
 
         HashMap<State, Action> newPolicy;
 
@@ -297,10 +363,12 @@ public class GridWorld {
             /**
              * Store data for graph plotting.
              */
-            for(State stateIterator : mUtilityMap.keySet()){
-                XYSeries dataSeries = mPIDataMap.get(stateIterator);
-                dataSeries.add(numPolicyEvalIter, mUtilityMap.get(stateIterator));
-                mPIDataMap.put(stateIterator, dataSeries);
+            if(displayUI){
+                for(State stateIterator : mUtilityMap.keySet()){
+                    DataSeries dataSeries = mPIDataMap.get(stateIterator);
+                    dataSeries.add(numPolicyEvalIter, mUtilityMap.get(stateIterator));
+                    mPIDataMap.put(stateIterator, dataSeries);
+                }
             }
 
             /**
@@ -326,8 +394,17 @@ public class GridWorld {
             }
         }
 
+        mMetrics.endSolve(numPolicyEvalIter);
+        publishProgress(numPolicyEvalIter, mLiveDelta, mPolicyIterationMap, true);
+        mLivePublisher = null;
+        if(giveFeedback){
+            System.out.println(mMetrics.getSnapshot());
+        }
+
+        SolutionSnapshot snapshot = publishSnapshot("Policy Iteration", mPolicyIterationMap);
+
         if(displayUI){
-            GridUIUtils.displayWorld("Final State (Policy Iteration)", mPolicyIterationMap,
+            GridUIUtils.displayWorld("Final State (Policy Iteration)", snapshot,
                     this, 0, 0);
             GridUIUtils.displayLineChart("Policy Iteration", mPIDataMap);
         }
@@ -339,7 +416,13 @@ public class GridWorld {
      * Value Iteration implementation to calculate utility values and optimal values.
      */
     public int valueIteration(boolean displayUI, boolean giveFeedback, double epsilon){
-        initializeVIDataGrid();
+        mMetrics.beginSolve("Value Iteration");
+        if(displayUI){
+            initializeVIDataGrid();
+        }
+        if(mShowLiveView){
+            openLiveView("Value Iteration", 600, 0);
+        }
 
         /**
          * Reset utilities of all states to 0.
@@ -352,6 +435,7 @@ public class GridWorld {
         while(true){
             double delta = 0.0;
             numIterations++;
+            mMetrics.beginSweep();
 
             for(State stateIterator : mUtilityMap.keySet()){
                 /**
@@ -374,10 +458,14 @@ public class GridWorld {
                 /**
                  * Store data for graph plotting.
                  */
-                XYSeries dataSeries = mVIDataMap.get(stateIterator);
-                dataSeries.add(numIterations, stateUtility);
-                mVIDataMap.put(stateIterator, dataSeries);
+                if(displayUI){
+                    DataSeries dataSeries = mVIDataMap.get(stateIterator);
+                    dataSeries.add(numIterations, stateUtility);
+                    mVIDataMap.put(stateIterator, dataSeries);
+                }
             }
+            mMetrics.endSweep(mUtilityMap.size(), delta);
+            publishProgress(numIterations, delta, mValueIterationMap, false);
 
             /**
              * Check for convergence of utility values.
@@ -390,13 +478,377 @@ public class GridWorld {
             }
         }
 
+        mMetrics.endSolve(numIterations);
+        publishProgress(numIterations, mLiveDelta, mValueIterationMap, true);
+        mLivePublisher = null;
+        if(giveFeedback){
+            System.out.println(mMetrics.getSnapshot());
+        }
+
+        SolutionSnapshot snapshot = publishSnapshot("Value Iteration", mValueIterationMap);
+
         if(displayUI){
-            GridUIUtils.displayWorld("Final State (Value Iteration)", mValueIterationMap, this, 600, 0);
+            GridUIUtils.displayWorld("Final State (Value Iteration)", snapshot, this, 600, 0);
             GridUIUtils.displayLineChart("Value Iteration", mVIDataMap);
         }
         return numIterations;
     }
 
+    /**
+     * Policy Iteration with the utility values stored in the given precision (see PrecisionSolver).
+     */
+    public int policyIteration(boolean displayUI, boolean giveFeedback, double epsilon,
+                               PrecisionSolver.Precision precision){
+        PrecisionSolver solver = new PrecisionSolver(getStateSpace(), DISCOUNT_FACTOR);
+        if(mShowLiveView){
+            solver.setPublisher(openLiveView("Policy Iteration, " + precision, 0, 0));
+        }
+        int numIterations = solver.policyIteration(precision, epsilon);
+        mLivePublisher = null;
+
+        setUtilities(mStateSpace.toGridArray(solver.getUtilities()));
+        setPolicy(mStateSpace.toGridArray(solver.getPolicy()), mPolicyIterationMap);
+
+        if(giveFeedback){
+            System.out.println("Number of Policy Evaluation sweeps (" + precision + "): float = " +
+                    solver.getNumFloatSweeps() + ", double = " + solver.getNumDoubleSweeps() +
+                    ", final delta = " + solver.getFinalDelta());
+        }
+
+        SolutionSnapshot snapshot = publishSnapshot("Policy Iteration (" + precision + ")", mPolicyIterationMap);
+
+        if(displayUI){
+            GridUIUtils.displayWorld("Final State (Policy Iteration, " + precision + ")", snapshot,
+                    this, 0, 0);
+        }
+        return numIterations;
+    }
+
+    /**
+     * Value Iteration with the utility values stored in the given precision (see PrecisionSolver).
+     */
+    public int valueIteration(boolean displayUI, boolean giveFeedback, double epsilon,
+                              PrecisionSolver.Precision precision){
+        PrecisionSolver solver = new PrecisionSolver(getStateSpace(), DISCOUNT_FACTOR);
+        if(mShowLiveView){
+            solver.setPublisher(openLiveView("Value Iteration, " + precision, 600, 0));
+        }
+        int numIterations = solver.valueIteration(precision, epsilon);
+        mLivePublisher = null;
+
+        setUtilities(mStateSpace.toGridArray(solver.getUtilities()));
+        setPolicy(mStateSpace.toGridArray(solver.getPolicy()), mValueIterationMap);
+
+        if(giveFeedback){
+            System.out.println("Number of iterations for Value Iteration (" + precision + "): float = " +
+                    solver.getNumFloatSweeps() + ", double = " + solver.getNumDoubleSweeps() +
+                    ", final delta = " + solver.getFinalDelta());
+        }
+
+        SolutionSnapshot snapshot = publishSnapshot("Value Iteration (" + precision + ")", mValueIterationMap);
+
+        if(displayUI){
+            GridUIUtils.displayWorld("Final State (Value Iteration, " + precision + ")", snapshot,
+                    this, 600, 0);
+        }
+        return numIterations;
+    }
+
+    /**
+     * Value Iteration with Anderson acceleration (see AndersonSolver). Uses the same convergence
+     * check as plain Value Iteration, but typically needs far fewer sweeps for small epsilon.
+     */
+    public int acceleratedValueIteration(boolean displayUI, boolean giveFeedback, double epsilon){
+        AndersonSolver solver = new AndersonSolver(getStateSpace(), DISCOUNT_FACTOR);
+        int numIterations = solver.valueIteration(epsilon);
+
+        /**
+         * Copy the utility values, and derive the best action for every state.
+         */
+        setUtilities(mStateSpace.toGridArray(solver.getUtilities()));
+        for(State stateIterator : mUtilityMap.keySet()){
+            mValueIterationMap.put(stateIterator, getBestAction(stateIterator, StateSpace.ACTION_TIE_TOLERANCE));
+        }
+
+        if(giveFeedback){
+            System.out.println("Number of iterations for Accelerated Value Iteration: " + numIterations +
+                    " (fallbacks to plain sweeps: " + solver.getNumFallbacks() + ")");
+        }
+
+        SolutionSnapshot snapshot = publishSnapshot("Accelerated Value Iteration", mValueIterationMap);
+
+        if(displayUI){
+            GridUIUtils.displayWorld("Final State (Accelerated Value Iteration)", snapshot, this, 600, 0);
+        }
+        return numIterations;
+    }
+
+    /**
+     * Experimental row-blocked Value Iteration (see TiledSolver). Runs up to numLocalSweeps sweeps on
+     * every tile of rows, with the number of rows per tile tuned automatically. It has shown no speedup
+     * over valueIteration so far, so prefer that one.
+     */
+    public int tiledValueIteration(boolean displayUI, boolean giveFeedback, double epsilon, int numLocalSweeps){
+        TiledSolver solver = new TiledSolver(getStateSpace(), DISCOUNT_FACTOR);
+        int numIterations = solver.valueIteration(epsilon, numLocalSweeps, 0);
+
+        /**
+         * Copy the utility values, and derive the best action for every state.
+         */
+        setUtilities(mStateSpace.toGridArray(solver.getUtilities()));
+        for(State stateIterator : mUtilityMap.keySet()){
+            mValueIterationMap.put(stateIterator, getBestAction(stateIterator, StateSpace.ACTION_TIE_TOLERANCE));
+        }
+
+        if(giveFeedback){
+            System.out.println("Number of passes for Tiled Value Iteration: " + numIterations +
+                    " (rows per tile: " + solver.getTileRows() + ", backups: " + solver.getNumBackups() + ")");
+        }
+
+        SolutionSnapshot snapshot = publishSnapshot("Tiled Value Iteration", mValueIterationMap);
+
+        if(displayUI){
+            GridUIUtils.displayWorld("Final State (Tiled Value Iteration)", snapshot, this, 600, 0);
+        }
+        return numIterations;
+    }
+
+    /**
+     * Topological Value Iteration (see TopologicalSolver). The regions of the GridWorld that are connected
+     * by moves are solved one after the other, each until it has converged on its own.
+     */
+    public int topologicalValueIteration(boolean displayUI, boolean giveFeedback, double epsilon){
+        TopologicalSolver solver = new TopologicalSolver(getStateSpace(), DISCOUNT_FACTOR);
+        int numIterations = solver.valueIteration(epsilon);
+
+        /**
+         * Copy the utility values, and derive the best action for every state.
+         */
+        setUtilities(mStateSpace.toGridArray(solver.getUtilities()));
+        for(State stateIterator : mUtilityMap.keySet()){
+            mValueIterationMap.put(stateIterator, getBestAction(stateIterator, StateSpace.ACTION_TIE_TOLERANCE));
+        }
+
+        if(giveFeedback){
+            System.out.println("Number of iterations for Topological Value Iteration: " + numIterations +
+                    " (components: " + solver.getNumComponents() + ", largest: " + solver.getLargestComponentSize() +
+                    " states, backups: " + solver.getNumBackups() + ")");
+        }
+
+        SolutionSnapshot snapshot = publishSnapshot("Topological Value Iteration", mValueIterationMap);
+
+        if(displayUI){
+            GridUIUtils.displayWorld("Final State (Topological Value Iteration)", snapshot, this, 600, 0);
+        }
+        return numIterations;
+    }
+
+    /**
+     * Point query: the best action from a single non-walled state, found with ILAO*
+     * (see PointQuerySolver). Only the states relevant to the start state are backed up, and the work
+     * is reused by later queries with the same epsilon. Does not change the utility values or policies
+     * of the GridWorld.
+     */
+    public Action pointQuery(boolean giveFeedback, int rowIndex, int colIndex, double epsilon){
+        int startState = getStateSpace().getStateIndex(rowIndex * mNumCols + colIndex);
+        if(startState < 0){
+            throw new IllegalArgumentException("No non-walled state at (" + rowIndex + ", " + colIndex + ")");
+        }
+        if(mPointQuerySolver == null){
+            mPointQuerySolver = new PointQuerySolver(mStateSpace, DISCOUNT_FACTOR);
+        }
+
+        long numBackupsBefore = mPointQuerySolver.getNumBackups();
+        PointQuerySolver.PartialPolicy policy = mPointQuerySolver.solve(startState, epsilon);
+
+        if(giveFeedback){
+            System.out.println("Point query from (" + rowIndex + ", " + colIndex + "): " +
+                    ALL_POSSIBLE_ACTIONS[policy.getStartAction()] + ", utility = " + policy.getUtility(startState) +
+                    " (states in policy: " + policy.getNumStates() +
+                    ", backups: " + (mPointQuerySolver.getNumBackups() - numBackupsBefore) + ")");
+        }
+        return ALL_POSSIBLE_ACTIONS[policy.getStartAction()];
+    }
+
+    /**
+     * Distributed Value Iteration. The GridWorld is split into numTileRows x numTileCols rectangular tiles,
+     * each of which is swept by a separate worker process. The workers exchange the utility values along
+     * the tile boundaries after every sweep (see DistributedSolver).
+     */
+    public int distributedValueIteration(boolean displayUI, boolean giveFeedback, double epsilon,
+                                         int numTileRows, int numTileCols) throws IOException {
+        DistributedSolver solver = new DistributedSolver(mNumRows, mNumCols, getRewardArray(), DISCOUNT_FACTOR);
+        double[] utilityArray = solver.solve(numTileRows, numTileCols, epsilon);
+
+        /**
+         * Copy the utility values gathered from the workers, and derive the best action for every state.
+         */
+        setUtilities(utilityArray);
+        for(State stateIterator : mUtilityMap.keySet()){
+            mValueIterationMap.put(stateIterator, getBestAction(stateIterator, StateSpace.ACTION_TIE_TOLERANCE));
+        }
+
+        int numIterations = solver.getNumIterations();
+        if(giveFeedback){
+            System.out.println("Number of iterations for Distributed Value Iteration: " + numIterations);
+        }
+
+        SolutionSnapshot snapshot = publishSnapshot("Distributed Value Iteration", mValueIterationMap);
+
+        if(displayUI){
+            GridUIUtils.displayWorld("Final State (Distributed Value Iteration)", snapshot, this, 600, 0);
+        }
+        return numIterations;
+    }
+
+    /**
+     * Open a live view of the progress of every following Policy Iteration and Value Iteration solve.
+     * @param showLiveView
+     */
+    public void setShowLiveView(boolean showLiveView){
+        mShowLiveView = showLiveView;
+    }
+
+    /**
+     * Open a window that shows the progress of the solve, and return the publisher that feeds it.
+     * @param title
+     * @param xCoord
+     * @param yCoord
+     * @return
+     */
+    private SolutionPublisher openLiveView(String title, int xCoord, int yCoord){
+        int numStates = getStateSpace().getNumStates();
+        mLivePublisher = new SolutionPublisher(numStates, LIVE_FRAMES_PER_SECOND);
+        mLiveUtilities = new double[numStates];
+        mLivePolicy = new int[numStates];
+        LiveView.open("Live (" + title + ")", mStateSpace, mLivePublisher, xCoord, yCoord);
+        return mLivePublisher;
+    }
+
+    /**
+     * Publish the current utility values and policy to the live view, if one is open and a frame is due
+     * (or force is set). Costs a single clock read when no frame is due.
+     * @param sweep
+     * @param delta
+     * @param policyMap
+     * @param force
+     */
+    private void publishProgress(int sweep, double delta, HashMap<State, Action> policyMap, boolean force){
+        mLiveDelta = delta;
+        if(mLivePublisher == null || (!force && !mLivePublisher.isDue())){
+            return;
+        }
+        boolean hasPolicy = policyMap.size() == mUtilityMap.size();
+        for(State stateIterator : mUtilityMap.keySet()){
+            int s = mStateSpace.getStateIndex(stateIterator.getRowIndex() * mNumCols + stateIterator.getColIndex());
+            mLiveUtilities[s] = mUtilityMap.get(stateIterator);
+            if(hasPolicy){
+                mLivePolicy[s] = getActionIndex(policyMap.get(stateIterator));
+            }
+        }
+        mLivePublisher.publish(mLiveUtilities, hasPolicy ? mLivePolicy : null, sweep, delta, force);
+    }
+
+    private static int getActionIndex(Action action){
+        switch (action.getIntendedAction()){
+            case "UP": return 0;
+            case "RIGHT": return 1;
+            case "DOWN": return 2;
+            default: return 3;
+        }
+    }
+
+    /**
+     * Display a solution computed outside the GridWorld, given as utility values and action indices
+     * in row-major order.
+     * @param title
+     * @param utilityArray
+     * @param policy
+     */
+    void displaySolution(String title, double[] utilityArray, int[] policy){
+        setUtilities(utilityArray);
+        setPolicy(policy, mValueIterationMap);
+        GridUIUtils.displayWorld(title, publishSnapshot(title, mValueIterationMap), this, 0, 0);
+    }
+
+    /**
+     * Copy the current utility values and the given policy into a new snapshot, and make it the latest
+     * snapshot of the kind of the policy map (Policy Iteration or Value Iteration).
+     * @param solverName
+     * @param policyMap
+     * @return
+     */
+    private SolutionSnapshot publishSnapshot(String solverName, HashMap<State, Action> policyMap){
+        double[] utilities = new double[mNumRows * mNumCols];
+        int[] policy = new int[mNumRows * mNumCols];
+        Arrays.fill(utilities, Double.NaN);
+        Arrays.fill(policy, -1);
+        for(State stateIterator : mUtilityMap.keySet()){
+            int cell = stateIterator.getRowIndex() * mNumCols + stateIterator.getColIndex();
+            utilities[cell] = mUtilityMap.get(stateIterator);
+            Action action = policyMap.get(stateIterator);
+            if(action != null){
+                policy[cell] = getActionIndex(action);
+            }
+        }
+
+        SolutionSnapshot snapshot = new SolutionSnapshot(mSnapshotVersion.incrementAndGet(), solverName,
+                mNumRows, mNumCols, utilities, policy);
+        /**
+         * Only the solving thread publishes, so the solutions cannot change between the get and the set.
+         */
+        mSolutions.set(new PublishedSolutions(mSolutions.get(), snapshot, policyMap == mPolicyIterationMap));
+        return snapshot;
+    }
+
+    /**
+     * Return the compact representation of the non-walled states, building it on first use.
+     * @return
+     */
+    CompactStateSpace getStateSpace(){
+        if(mStateSpace == null){
+            mStateSpace = new CompactStateSpace(mNumRows, mNumCols, getRewardArray());
+        }
+        return mStateSpace;
+    }
+
+    /**
+     * Return the rewards for all the states (cells) in row-major order. Walled states have a reward of NaN.
+     * @return
+     */
+    double[] getRewardArray(){
+        double[] rewardArray = new double[mNumRows * mNumCols];
+        for(int i = 0; i < mNumRows; ++i){
+            for(int j = 0; j < mNumCols; ++j){
+                State state = mStateGrid[i][j];
+                rewardArray[i * mNumCols + j] = state.isWall() ? Double.NaN : state.getReward();
+            }
+        }
+        return rewardArray;
+    }
+
+    /**
+     * Set the utility values of all non-walled states from an array in row-major order.
+     * @param utilityArray
+     */
+    private void setUtilities(double[] utilityArray){
+        for(State stateIterator : mUtilityMap.keySet()){
+            mUtilityMap.put(stateIterator, utilityArray[stateIterator.getRowIndex() * mNumCols + stateIterator.getColIndex()]);
+        }
+    }
+
+    /**
+     * Set the action for all non-walled states from an array of action indices in row-major order.
+     * @param policy
+     * @param policyMap
+     */
+    private void setPolicy(int[] policy, HashMap<State, Action> policyMap){
+        for(State stateIterator : mUtilityMap.keySet()){
+            int action = policy[stateIterator.getRowIndex() * mNumCols + stateIterator.getColIndex()];
+            policyMap.put(stateIterator, ALL_POSSIBLE_ACTIONS[action]);
+        }
+    }
+
     /**
      * Method to check if the agent can go to the state (cell) above from the current state (cell).
      * @param state
@@ -492,6 +944,17 @@ public class GridWorld {
      * @return
      */
     private Action getBestAction(State state){
+        return getBestAction(state, 0.0);
+    }
+
+    /**
+     * Return action with the maximum expected utility given the current state, treating expected
+     * utilities within tieTolerance of each other as ties, in which case the earlier action is kept.
+     * @param state
+     * @param tieTolerance
+     * @return
+     */
+    private Action getBestAction(State state, double tieTolerance){
         Action bestAction = null;
         double maximumUtility = Double.NEGATIVE_INFINITY;
 
@@ -500,7 +963,7 @@ public class GridWorld {
          * maximum expected utility.
          */
         for(Action actionIterator : ALL_POSSIBLE_ACTIONS) {
-            if (maximumUtility < getExpectedUtility(actionIterator, state)) {
+            if (maximumUtility + tieTolerance < getExpectedUtility(actionIterator, state)) {
                 maximumUtility = getExpectedUtility(actionIterator, state);
                 bestAction = actionIterator;
             }
@@ -584,7 +1047,162 @@ public class GridWorld {
         return mStateGrid;
     }
 
-    public HashMap<State, Double> getUtilityMap() {
-        return mUtilityMap;
+    /**
+     * Return a read-only map between the non-walled states and their utility values in the latest
+     * snapshot, or their initial utility of 0 before the first solve. Safe to call while another thread
+     * is solving.
+     * @return
+     */
+    public Map<State, Double> getUtilityMap() {
+        PublishedSolutions solutions = mSolutions.get();
+        Map<State, Double> utilityMap = solutions.mUtilityMap;
+        if(utilityMap == null){
+            HashMap<State, Double> latestMap = new HashMap<State, Double>();
+            for(int i = 0; i < mNumRows; ++i){
+                for(int j = 0; j < mNumCols; ++j){
+                    if(!mStateGrid[i][j].isWall()){
+                        latestMap.put(mStateGrid[i][j], solutions.mLatest.getUtility(i, j));
+                    }
+                }
+            }
+            utilityMap = Collections.unmodifiableMap(latestMap);
+            solutions.mUtilityMap = utilityMap;
+        }
+        return utilityMap;
+    }
+
+    /**
+     * Return a read-only map between the non-walled states and their actions in the last Policy
+     * Iteration, or the initial policy if there was none yet. Safe to call while another thread is solving.
+     * @return
+     */
+    public Map<State, Action> getPolicyIterationMap() {
+        PublishedSolutions solutions = mSolutions.get();
+        Map<State, Action> policyMap = solutions.mPolicyIterationMap;
+        if(policyMap == null){
+            policyMap = toPolicyMap(solutions.mPolicyIteration);
+            solutions.mPolicyIterationMap = policyMap;
+        }
+        return policyMap;
+    }
+
+    /**
+     * Return a read-only map between the non-walled states and their best actions in the last Value
+     * Iteration (of any variant), or an empty map if there was none yet. Safe to call while another
+     * thread is solving.
+     * @return
+     */
+    public Map<State, Action> getValueIterationMap() {
+        PublishedSolutions solutions = mSolutions.get();
+        Map<State, Action> policyMap = solutions.mValueIterationMap;
+        if(policyMap == null){
+            policyMap = toPolicyMap(solutions.mValueIteration);
+            solutions.mValueIterationMap = policyMap;
+        }
+        return policyMap;
+    }
+
+    /**
+     * Read-only map between the non-walled states and their actions in the snapshot, empty if it is null.
+     * @param snapshot
+     * @return
+     */
+    private Map<State, Action> toPolicyMap(SolutionSnapshot snapshot){
+        HashMap<State, Action> policyMap = new HashMap<State, Action>();
+        if(snapshot != null){
+            for(int i = 0; i < mNumRows; ++i){
+                for(int j = 0; j < mNumCols; ++j){
+                    int action = snapshot.getAction(i, j);
+                    if(!mStateGrid[i][j].isWall() && action >= 0){
+                        policyMap.put(mStateGrid[i][j], ALL_POSSIBLE_ACTIONS[action]);
+                    }
+                }
+            }
+        }
+        return Collections.unmodifiableMap(policyMap);
+    }
+
+    /**
+     * Return the solution of the last Policy Iteration, or null if there was none yet.
+     * Can be called from any thread without locking.
+     * @return
+     */
+    public SolutionSnapshot getPolicyIterationSnapshot() {
+        return mSolutions.get().mPolicyIteration;
+    }
+
+    /**
+     * Return the solution of the last Value Iteration (of any variant), or null if there was none yet.
+     * Can be called from any thread without locking.
+     * @return
+     */
+    public SolutionSnapshot getValueIterationSnapshot() {
+        return mSolutions.get().mValueIteration;
+    }
+
+    /**
+     * Return the solution of the last solve of any kind, or null if there was none yet.
+     * Can be called from any thread without locking.
+     * @return
+     */
+    public SolutionSnapshot getLatestSnapshot() {
+        return mSolutions.get().mLatest;
+    }
+
+    /**
+     * Return a snapshot of the performance metrics of the last Policy Iteration or Value Iteration.
+     * @return
+     */
+    public SolverMetrics.Snapshot getMetrics() {
+        return mMetrics.getSnapshot();
+    }
+
+    /**
+     * The snapshots of the last Policy Iteration, the last Value Iteration and the last solve of either
+     * kind, which are replaced together, so a reader never sees one of them updated and not the others.
+     * The maps built from the snapshots are cached here, and carried over to the next solutions while
+     * their snapshot stays the same. Two readers may both build a missing map; either copy is correct.
+     */
+    private static final class PublishedSolutions {
+
+        private final SolutionSnapshot mPolicyIteration;
+        private final SolutionSnapshot mValueIteration;
+        private final SolutionSnapshot mLatest;
+
+        /**
+         * Read-only maps of the snapshots above, built on first use.
+         */
+        private volatile Map<State, Double> mUtilityMap;
+        private volatile Map<State, Action> mPolicyIterationMap;
+        private volatile Map<State, Action> mValueIterationMap;
+
+        /**
+         * Solutions before the first solve: the initial utilities and Policy Iteration policy, copied
+         * since the solving thread goes on to change the originals.
+         * @param utilityMap
+         * @param policyMap
+         */
+        private PublishedSolutions(HashMap<State, Double> utilityMap, HashMap<State, Action> policyMap){
+            mPolicyIteration = null;
+            mValueIteration = null;
+            mLatest = null;
+            mUtilityMap = Collections.unmodifiableMap(new HashMap<State, Double>(utilityMap));
+            mPolicyIterationMap = Collections.unmodifiableMap(new HashMap<State, Action>(policyMap));
+            mValueIterationMap = Collections.unmodifiableMap(new HashMap<State, Action>());
+        }
+
+        /**
+         * The previous solutions, with the snapshot of a new Policy Iteration or Value Iteration.
+         * @param previous
+         * @param snapshot
+         * @param isPolicyIteration
+         */
+        private PublishedSolutions(PublishedSolutions previous, SolutionSnapshot snapshot, boolean isPolicyIteration){
+            mPolicyIteration = isPolicyIteration ? snapshot : previous.mPolicyIteration;
+            mValueIteration = isPolicyIteration ? previous.mValueIteration : snapshot;
+            mLatest = snapshot;
+            mPolicyIterationMap = isPolicyIteration ? null : previous.mPolicyIterationMap;
+            mValueIterationMap = isPolicyIteration ? previous.mValueIterationMap : null;
+        }
     }
 }
@@ -0,0 +1,728 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+public class GridWorldCli {
+
+    /**
+     * Headless command-line entry point. Solves the GridWorlds read from world files and prints one
+     * line of JSON per world. Only the compact array-based solvers are used, so no AWT, Swing,
+     * JFreeChart or JavaFX classes are loaded unless the --ui or --live flag is given. With --render,
+     * tiles are drawn into offscreen images in headless mode.
+     *
+     * Usage: java GridWorldCli [options] worldFile...
+     *        java GridWorldCli [options] --volume shape
+     *   --solver vi|pi|float|mixed|accelerated|topological|anytime|distributed|batch
+     *                                                   (default: vi)
+     *            tiled   experimental row-blocked Value Iteration, with no measured speedup over vi yet
+     *   --epsilon value                                 (default: 1e-6)
+     *   --deadline millis    time limit of the anytime solver (default: none)
+     *   --max-backups n      limit on the Bellman backups of the anytime solver (default: none)
+     *   --local-sweeps n     local sweeps per tile for the experimental tiled solver (default: 2)
+     *   --tile-rows n        rows per tile for the experimental tiled solver (default: tuned automatically)
+     *   --tiles RxC          tiles of the distributed solver, one worker JVM per tile (default: 2x2)
+     *   --discounts values   discount factors solved together by the batch solver, comma separated, one
+     *                        line of output per discount factor (default: 0.99)
+     *   --transitions logs   estimate the transition model from transition logs, comma separated, and solve
+     *                        it with Value Iteration after every log, warm-started from the previous
+     *                        solution (see TransitionEstimator)
+     *   --utilities          also print the utility values
+     *   --metrics            also print solver metrics (vi, pi, float and mixed solvers)
+     *   --render directory   write a PNG tile pyramid of every solved GridWorld into directory/worldName
+     *   --cell-size n        size of a cell in pixels at the highest zoom level of the tiles (default: 16)
+     *   --ui                 display the solved GridWorlds in a window
+     *   --live               show the progress of every solve in a window (vi, pi, float and mixed solvers)
+     *   --volume shape       solve a random N-dimensional world of the given shape (e.g. 512x512x512)
+     *                        instead of world files (vi, pi, float, mixed, accelerated and anytime solvers)
+     *   --slip values        slip probability of every axis of the volume, comma separated (default: 0.2)
+     *   --seed n             seed of the random volume (default: 42)
+     *
+     * A world file starts with the number of rows and columns, followed by one reward per cell in
+     * row-major order, separated by whitespace. A wall is written as W (or NaN).
+     */
+
+    private static final double DISCOUNT_FACTOR = 0.99;
+
+    /**
+     * Largest number of frames per second shown by the --live view.
+     */
+    private static final double LIVE_FRAMES_PER_SECOND = 30;
+
+    /**
+     * Interval between two models published while a transition log is being read.
+     */
+    private static final long TRANSITION_PUBLISH_MILLIS = 100;
+
+    /**
+     * Characters used for the actions UP, RIGHT, DOWN, LEFT in the printed policy, and for walls.
+     */
+    private static final char[] ACTION_CHARS = {'U', 'R', 'D', 'L'};
+    private static final char WALL_CHAR = '#';
+
+    public static void main(String[] args) {
+        String solverName = "vi";
+        double epsilon = 1e-6;
+        int numLocalSweeps = 2;
+        int tileRows = 0;
+        String distributedTiles = "2x2";
+        double[] discountFactors = {DISCOUNT_FACTOR};
+        String transitionLogs = null;
+        boolean printUtilities = false;
+        boolean printMetrics = false;
+        boolean displayUI = false;
+        boolean liveView = false;
+        String renderDirectory = null;
+        int cellSize = 16;
+        String volumeShape = null;
+        String axisSlip = null;
+        long seed = 42;
+        long deadlineMillis = -1;
+        long maxBackups = Long.MAX_VALUE;
+
+        int argIndex = 0;
+        String option = null;
+        try{
+            while(argIndex < args.length && args[argIndex].startsWith("--")){
+                option = args[argIndex++];
+                switch (option){
+                    case "--solver": {
+                        solverName = getOptionValue(args, argIndex++, option);
+                        break;
+                    }
+                    case "--epsilon": {
+                        epsilon = Double.parseDouble(getOptionValue(args, argIndex++, option));
+                        break;
+                    }
+                    case "--deadline": {
+                        deadlineMillis = Long.parseLong(getOptionValue(args, argIndex++, option));
+                        if(deadlineMillis < 0){
+                            printUsageAndExit("The deadline must not be negative: " + deadlineMillis);
+                        }
+                        break;
+                    }
+                    case "--max-backups": {
+                        maxBackups = Long.parseLong(getOptionValue(args, argIndex++, option));
+                        if(maxBackups < 0){
+                            printUsageAndExit("The number of backups must not be negative: " + maxBackups);
+                        }
+                        break;
+                    }
+                    case "--tiles": {
+                        distributedTiles = getOptionValue(args, argIndex++, option);
+                        break;
+                    }
+                    case "--discounts": {
+                        String[] values = getOptionValue(args, argIndex++, option).split(",");
+                        discountFactors = new double[values.length];
+                        for(int k = 0; k < values.length; ++k){
+                            discountFactors[k] = Double.parseDouble(values[k].trim());
+                        }
+                        break;
+                    }
+                    case "--transitions": {
+                        transitionLogs = getOptionValue(args, argIndex++, option);
+                        break;
+                    }
+                    case "--tile-rows": {
+                        tileRows = Integer.parseInt(getOptionValue(args, argIndex++, option));
+                        break;
+                    }
+                    case "--local-sweeps": {
+                        numLocalSweeps = Integer.parseInt(getOptionValue(args, argIndex++, option));
+                        break;
+                    }
+                    case "--utilities": {
+                        printUtilities = true;
+                        break;
+                    }
+                    case "--metrics": {
+                        printMetrics = true;
+                        break;
+                    }
+                    case "--render": {
+                        renderDirectory = getOptionValue(args, argIndex++, option);
+                        break;
+                    }
+                    case "--cell-size": {
+                        cellSize = Integer.parseInt(getOptionValue(args, argIndex++, option));
+                        break;
+                    }
+                    case "--ui": {
+                        displayUI = true;
+                        break;
+                    }
+                    case "--live": {
+                        liveView = true;
+                        break;
+                    }
+                    case "--volume": {
+                        volumeShape = getOptionValue(args, argIndex++, option);
+                        break;
+                    }
+                    case "--slip": {
+                        axisSlip = getOptionValue(args, argIndex++, option);
+                        break;
+                    }
+                    case "--seed": {
+                        seed = Long.parseLong(getOptionValue(args, argIndex++, option));
+                        break;
+                    }
+                    default: {
+                        printUsageAndExit("Unknown option: " + option);
+                    }
+                }
+            }
+        } catch (NumberFormatException e){
+            printUsageAndExit("Invalid value for " + option + ": " + e.getMessage());
+        }
+
+        if(argIndex == args.length && volumeShape == null){
+            printUsageAndExit(null);
+        }
+
+        if(volumeShape != null){
+            System.setProperty("java.awt.headless", "true");
+            try{
+                solveVolume(System.out, volumeShape, axisSlip, seed, solverName, epsilon, deadlineMillis, maxBackups,
+                        printMetrics);
+            } catch (RuntimeException e){
+                System.out.println("{\"volume\":" + quote(volumeShape) + ",\"error\":" + quote(String.valueOf(e.getMessage())) + "}");
+                System.exit(1);
+            }
+            return;
+        }
+
+        if(!displayUI && !liveView){
+            /**
+             * Tiles are rendered offscreen, which must not need a display.
+             */
+            System.setProperty("java.awt.headless", "true");
+        }
+
+        PrintStream out = System.out;
+        int numFailures = 0;
+
+        for(; argIndex < args.length; ++argIndex){
+            String worldFile = args[argIndex];
+            try{
+                if(transitionLogs != null){
+                    solveWorldWithTransitions(out, worldFile, transitionLogs.split(","), epsilon, printUtilities);
+                }
+                else if(solverName.equals("batch")){
+                    solveWorldBatch(out, worldFile, discountFactors, epsilon, printUtilities);
+                }
+                else{
+                    solveWorld(out, worldFile, solverName, epsilon, deadlineMillis, maxBackups, numLocalSweeps,
+                            tileRows, distributedTiles, printUtilities, printMetrics,
+                            renderDirectory, cellSize, displayUI, liveView);
+                }
+            } catch (IOException | RuntimeException e){
+                numFailures++;
+                out.println("{\"world\":" + quote(worldFile) + ",\"error\":" + quote(String.valueOf(e.getMessage())) + "}");
+            }
+        }
+
+        if(numFailures > 0 && !displayUI && !liveView){
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Return the value following an option, or print the usage and exit if there is none.
+     */
+    private static String getOptionValue(String[] args, int argIndex, String option){
+        if(argIndex >= args.length){
+            printUsageAndExit("Missing value for " + option);
+        }
+        return args[argIndex];
+    }
+
+    /**
+     * Print an error message, if any, and the usage, and exit with status 2.
+     */
+    private static void printUsageAndExit(String message){
+        if(message != null){
+            System.err.println(message);
+        }
+        System.err.println("Usage: java GridWorldCli [--solver vi|pi|float|mixed|accelerated|topological|anytime|distributed|batch] " +
+                "[--epsilon value] [--deadline millis] [--max-backups n] " +
+                "[--tiles RxC] [--discounts values] [--transitions logs] [--utilities] [--metrics] [--render directory] [--cell-size n] " +
+                "[--ui] [--live] worldFile...\n" +
+                "       java GridWorldCli [--solver vi|pi|float|mixed|accelerated|anytime] [--epsilon value] " +
+                "[--deadline millis] [--max-backups n] [--metrics] " +
+                "--volume shape [--slip values] [--seed n]\n" +
+                "Experimental: --solver tiled [--local-sweeps n] [--tile-rows n]");
+        System.exit(2);
+    }
+
+    /**
+     * Read, solve and report a single world file.
+     */
+    private static void solveWorld(PrintStream out, String worldFile, String solverName, double epsilon,
+                                   long deadlineMillis, long maxBackups, int numLocalSweeps, int tileRows,
+                                   String distributedTiles, boolean printUtilities, boolean printMetrics,
+                                   String renderDirectory, int cellSize, boolean displayUI,
+                                   boolean liveView) throws IOException {
+        int[] dimensions = new int[2];
+        double[] rewardArray = readWorld(worldFile, dimensions);
+        int numRows = dimensions[0];
+        int numCols = dimensions[1];
+
+        long startTime = System.nanoTime();
+
+        CompactStateSpace stateSpace = new CompactStateSpace(numRows, numCols, rewardArray);
+        double[] utilities;
+        int[] policy;
+        int numIterations;
+        SolverMetrics.Snapshot metrics = null;
+        AnytimeSolver.Result anytimeResult = null;
+
+        switch (solverName){
+            case "vi":
+            case "pi":
+            case "float":
+            case "mixed": {
+                PrecisionSolver solver = new PrecisionSolver(stateSpace, DISCOUNT_FACTOR);
+                solver.setTrackAllocations(printMetrics);
+                if(liveView){
+                    SolutionPublisher publisher = new SolutionPublisher(stateSpace.getNumStates(), LIVE_FRAMES_PER_SECOND);
+                    LiveView.open(worldFile + " (" + solverName + ")", stateSpace, publisher, 0, 0);
+                    solver.setPublisher(publisher);
+                }
+                PrecisionSolver.Precision precision = solverName.equals("float") ? PrecisionSolver.Precision.FLOAT :
+                        solverName.equals("mixed") ? PrecisionSolver.Precision.MIXED : PrecisionSolver.Precision.DOUBLE;
+                numIterations = solverName.equals("pi") ?
+                        solver.policyIteration(precision, epsilon) :
+                        solver.valueIteration(precision, epsilon);
+                utilities = solver.getUtilities();
+                policy = solver.getPolicy();
+                metrics = solver.getMetrics();
+                break;
+            }
+            case "accelerated": {
+                AndersonSolver solver = new AndersonSolver(stateSpace, DISCOUNT_FACTOR);
+                numIterations = solver.valueIteration(epsilon);
+                utilities = solver.getUtilities();
+                policy = new int[stateSpace.getNumStates()];
+                stateSpace.improvePolicy(utilities, policy);
+                break;
+            }
+            case "tiled": {
+                TiledSolver solver = new TiledSolver(stateSpace, DISCOUNT_FACTOR);
+                numIterations = solver.valueIteration(epsilon, numLocalSweeps, tileRows);
+                utilities = solver.getUtilities();
+                policy = new int[stateSpace.getNumStates()];
+                stateSpace.improvePolicy(utilities, policy);
+                break;
+            }
+            case "topological": {
+                TopologicalSolver solver = new TopologicalSolver(stateSpace, DISCOUNT_FACTOR);
+                numIterations = solver.valueIteration(epsilon);
+                utilities = solver.getUtilities();
+                policy = new int[stateSpace.getNumStates()];
+                stateSpace.improvePolicy(utilities, policy);
+                break;
+            }
+            case "anytime": {
+                anytimeResult = new AnytimeSolver(stateSpace, DISCOUNT_FACTOR).valueIteration(epsilon,
+                        createBudget(startTime, deadlineMillis, maxBackups));
+                numIterations = anytimeResult.getNumSweeps();
+                utilities = anytimeResult.getUtilities();
+                policy = anytimeResult.getPolicy();
+                break;
+            }
+            case "distributed": {
+                String[] tiles = distributedTiles.split("x");
+                if(tiles.length != 2){
+                    throw new IllegalArgumentException("Tiles must be given as RxC, not " + distributedTiles);
+                }
+                DistributedSolver solver = new DistributedSolver(numRows, numCols, rewardArray, DISCOUNT_FACTOR);
+                double[] utilityGrid = solver.solve(Integer.parseInt(tiles[0].trim()), Integer.parseInt(tiles[1].trim()), epsilon);
+                numIterations = solver.getNumIterations();
+
+                /**
+                 * The workers return every cell in row-major order, so pick out the states.
+                 */
+                utilities = new double[stateSpace.getNumStates()];
+                for(int s = 0; s < utilities.length; ++s){
+                    utilities[s] = utilityGrid[stateSpace.getCell(s)];
+                }
+                policy = new int[stateSpace.getNumStates()];
+                stateSpace.improvePolicy(utilities, policy);
+                break;
+            }
+            default: {
+                throw new IllegalArgumentException("Unknown solver: " + solverName);
+            }
+        }
+
+        long elapsedMillis = (System.nanoTime() - startTime) / 1000000;
+
+        File tileDirectory = null;
+        long renderMillis = 0;
+        if(renderDirectory != null){
+            tileDirectory = new File(renderDirectory, new File(worldFile).getName());
+            long renderStartTime = System.nanoTime();
+            new TileRenderer(stateSpace, utilities, policy, cellSize).writeTilePyramid(tileDirectory);
+            renderMillis = (System.nanoTime() - renderStartTime) / 1000000;
+        }
+
+        double[] utilityGrid = stateSpace.toGridArray(utilities);
+        int[] policyGrid = stateSpace.toGridArray(policy);
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\"world\":").append(quote(worldFile));
+        json.append(",\"rows\":").append(numRows);
+        json.append(",\"cols\":").append(numCols);
+        json.append(",\"states\":").append(stateSpace.getNumStates());
+        json.append(",\"solver\":").append(quote(solverName));
+        json.append(",\"epsilon\":").append(epsilon);
+        json.append(",\"iterations\":").append(numIterations);
+        json.append(",\"millis\":").append(elapsedMillis);
+        appendAnytimeResult(json, anytimeResult);
+
+        appendPolicy(json, policyGrid, numRows, numCols);
+        if(printUtilities){
+            appendUtilities(json, utilityGrid, policyGrid);
+        }
+        if(printMetrics && metrics != null){
+            json.append(",\"metrics\":{");
+            json.append("\"sweeps\":").append(metrics.getNumSweeps());
+            json.append(",\"backups\":").append(metrics.getNumBackups());
+            json.append(",\"sweepNanos\":").append(metrics.getSweepNanos());
+            json.append(",\"improvementNanos\":").append(metrics.getImprovementNanos());
+            json.append(",\"backupsPerSecond\":").append((long) metrics.getBackupsPerSecond());
+            json.append(",\"allocatedBytesPerSweep\":").append((long) metrics.getAllocatedBytesPerSweep());
+            json.append(",\"deltaStride\":").append(metrics.getDeltaStride());
+            json.append(",\"deltas\":[");
+            double[] deltas = metrics.getDeltaTrajectory();
+            for(int k = 0; k < deltas.length; ++k){
+                if(k > 0){
+                    json.append(',');
+                }
+                json.append(deltas[k]);
+            }
+            json.append("]}");
+        }
+        if(tileDirectory != null){
+            json.append(",\"tiles\":").append(quote(tileDirectory.getPath()));
+            json.append(",\"renderMillis\":").append(renderMillis);
+        }
+        json.append('}');
+        out.println(json);
+
+        /**
+         * The UI classes are only loaded from here.
+         */
+        if(displayUI){
+            GridWorld gridWorld = new GridWorld(numRows, numCols, rewardArray);
+            gridWorld.displaySolution(worldFile + " (" + solverName + ")", utilityGrid, policyGrid);
+        }
+    }
+
+    /**
+     * Read a single world file, solve it for every discount factor at once with the batch solver, and
+     * report one line per discount factor. The time is that of the whole batch.
+     */
+    private static void solveWorldBatch(PrintStream out, String worldFile, double[] discountFactors, double epsilon,
+                                        boolean printUtilities) throws IOException {
+        int[] dimensions = new int[2];
+        double[] rewardArray = readWorld(worldFile, dimensions);
+        int numRows = dimensions[0];
+        int numCols = dimensions[1];
+
+        long startTime = System.nanoTime();
+        CompactStateSpace stateSpace = new CompactStateSpace(numRows, numCols, rewardArray);
+        BatchSolver solver = new BatchSolver(stateSpace, discountFactors, null);
+        solver.valueIteration(epsilon);
+        long elapsedMillis = (System.nanoTime() - startTime) / 1000000;
+
+        for(int scenario = 0; scenario < solver.getNumScenarios(); ++scenario){
+            int[] policyGrid = stateSpace.toGridArray(solver.getPolicy(scenario));
+
+            StringBuilder json = new StringBuilder();
+            json.append("{\"world\":").append(quote(worldFile));
+            json.append(",\"rows\":").append(numRows);
+            json.append(",\"cols\":").append(numCols);
+            json.append(",\"states\":").append(stateSpace.getNumStates());
+            json.append(",\"solver\":").append(quote("batch"));
+            json.append(",\"discount\":").append(discountFactors[scenario]);
+            json.append(",\"epsilon\":").append(epsilon);
+            json.append(",\"iterations\":").append(solver.getNumIterations(scenario));
+            json.append(",\"sweeps\":").append(solver.getNumSweeps());
+            json.append(",\"millis\":").append(elapsedMillis);
+            appendPolicy(json, policyGrid, numRows, numCols);
+            if(printUtilities){
+                appendUtilities(json, stateSpace.toGridArray(solver.getUtilities(scenario)), policyGrid);
+            }
+            json.append('}');
+            out.println(json);
+        }
+    }
+
+    /**
+     * Read a single world file, estimate its transition model from the transition logs one after the
+     * other, and report the solution of the model after every log, each warm-started from the previous one.
+     */
+    private static void solveWorldWithTransitions(PrintStream out, String worldFile, String[] logFiles, double epsilon,
+                                                  boolean printUtilities) throws IOException {
+        int[] dimensions = new int[2];
+        double[] rewardArray = readWorld(worldFile, dimensions);
+        int numRows = dimensions[0];
+        int numCols = dimensions[1];
+
+        long startTime = System.nanoTime();
+        CompactStateSpace stateSpace = new CompactStateSpace(numRows, numCols, rewardArray);
+        StringBuilder logs = new StringBuilder();
+        TransitionEstimator.Solution solution;
+
+        try(TransitionEstimator estimator = new TransitionEstimator(stateSpace, DISCOUNT_FACTOR, epsilon,
+                TRANSITION_PUBLISH_MILLIS)){
+            solution = estimator.awaitSolution();
+            logs.append("{\"log\":null,\"records\":0,\"model\":").append(solution.getModelVersion());
+            logs.append(",\"iterations\":").append(solution.getNumIterations()).append('}');
+
+            for(String logFile : logFiles){
+                long numRecords = estimator.ingest(new File(logFile.trim()));
+                solution = estimator.awaitSolution();
+                logs.append(",{\"log\":").append(quote(logFile.trim()));
+                logs.append(",\"records\":").append(numRecords);
+                logs.append(",\"model\":").append(solution.getModelVersion());
+                logs.append(",\"iterations\":").append(solution.getNumIterations()).append('}');
+            }
+
+            long elapsedMillis = (System.nanoTime() - startTime) / 1000000;
+            int[] policyGrid = stateSpace.toGridArray(solution.toPolicyArray());
+
+            StringBuilder json = new StringBuilder();
+            json.append("{\"world\":").append(quote(worldFile));
+            json.append(",\"rows\":").append(numRows);
+            json.append(",\"cols\":").append(numCols);
+            json.append(",\"states\":").append(stateSpace.getNumStates());
+            json.append(",\"solver\":").append(quote("transitions"));
+            json.append(",\"epsilon\":").append(epsilon);
+            json.append(",\"ingested\":").append(estimator.getNumIngested());
+            json.append(",\"rejected\":").append(estimator.getNumRejected());
+            json.append(",\"logs\":[").append(logs).append(']');
+            json.append(",\"millis\":").append(elapsedMillis);
+            appendPolicy(json, policyGrid, numRows, numCols);
+            if(printUtilities){
+                appendUtilities(json, stateSpace.toGridArray(solution.toUtilityArray()), policyGrid);
+            }
+            json.append('}');
+            out.println(json);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while solving the transition model of " + worldFile, e);
+        }
+    }
+
+    /**
+     * Append the policy, one string of action characters per row.
+     */
+    private static void appendPolicy(StringBuilder json, int[] policyGrid, int numRows, int numCols){
+        json.append(",\"policy\":[");
+        for(int i = 0; i < numRows; ++i){
+            if(i > 0){
+                json.append(',');
+            }
+            json.append('"');
+            for(int j = 0; j < numCols; ++j){
+                int action = policyGrid[i * numCols + j];
+                json.append(action < 0 ? WALL_CHAR : ACTION_CHARS[action]);
+            }
+            json.append('"');
+        }
+        json.append(']');
+    }
+
+    /**
+     * Append the utility values in row-major order, with null for walls.
+     */
+    private static void appendUtilities(StringBuilder json, double[] utilityGrid, int[] policyGrid){
+        json.append(",\"utilities\":[");
+        for(int cell = 0; cell < utilityGrid.length; ++cell){
+            if(cell > 0){
+                json.append(',');
+            }
+            json.append(policyGrid[cell] < 0 ? "null" : Double.toString(utilityGrid[cell]));
+        }
+        json.append(']');
+    }
+
+    /**
+     * Generate, solve and report a random N-dimensional world. Only a summary is printed, since the
+     * world may have too many cells to print the policy.
+     */
+    private static void solveVolume(PrintStream out, String volumeShape, String axisSlip, long seed,
+                                    String solverName, double epsilon, long deadlineMillis, long maxBackups,
+                                    boolean printMetrics){
+        String[] sizes = volumeShape.split("x");
+        int[] shape = new int[sizes.length];
+        for(int a = 0; a < shape.length; ++a){
+            shape[a] = Integer.parseInt(sizes[a].trim());
+        }
+        double[] slip = new double[shape.length];
+        String[] slipValues = axisSlip == null ? new String[0] : axisSlip.split(",");
+        for(int a = 0; a < slip.length; ++a){
+            /**
+             * A single value applies to every axis.
+             */
+            slip[a] = slipValues.length == 0 ? GridSpace.DEFAULT_SLIP :
+                    Double.parseDouble(slipValues[slipValues.length == 1 ? 0 : a].trim());
+        }
+
+        long startTime = System.nanoTime();
+        GridSpace stateSpace = new WorldGenerator(seed, 0.25, 0.25, 0.25).generate(shape, slip);
+        long generateMillis = (System.nanoTime() - startTime) / 1000000;
+
+        startTime = System.nanoTime();
+        int numIterations;
+        SolverMetrics.Snapshot metrics = null;
+        AnytimeSolver.Result anytimeResult = null;
+        switch (solverName){
+            case "vi":
+            case "pi":
+            case "float":
+            case "mixed": {
+                PrecisionSolver solver = new PrecisionSolver(stateSpace, DISCOUNT_FACTOR);
+                PrecisionSolver.Precision precision = solverName.equals("float") ? PrecisionSolver.Precision.FLOAT :
+                        solverName.equals("mixed") ? PrecisionSolver.Precision.MIXED : PrecisionSolver.Precision.DOUBLE;
+                numIterations = solverName.equals("pi") ?
+                        solver.policyIteration(precision, epsilon) :
+                        solver.valueIteration(precision, epsilon);
+                metrics = solver.getMetrics();
+                break;
+            }
+            case "accelerated": {
+                numIterations = new AndersonSolver(stateSpace, DISCOUNT_FACTOR).valueIteration(epsilon);
+                break;
+            }
+            case "anytime": {
+                anytimeResult = new AnytimeSolver(stateSpace, DISCOUNT_FACTOR).valueIteration(epsilon,
+                        createBudget(startTime, deadlineMillis, maxBackups));
+                numIterations = anytimeResult.getNumSweeps();
+                break;
+            }
+            default: {
+                throw new IllegalArgumentException("Solver " + solverName + " does not support volumes");
+            }
+        }
+        long elapsedMillis = (System.nanoTime() - startTime) / 1000000;
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\"volume\":").append(quote(volumeShape));
+        json.append(",\"cells\":").append(stateSpace.getNumStates());
+        json.append(",\"openCells\":").append(stateSpace.getNumOpenCells());
+        json.append(",\"seed\":").append(seed);
+        json.append(",\"solver\":").append(quote(solverName));
+        json.append(",\"epsilon\":").append(epsilon);
+        json.append(",\"iterations\":").append(numIterations);
+        json.append(",\"generateMillis\":").append(generateMillis);
+        json.append(",\"millis\":").append(elapsedMillis);
+        appendAnytimeResult(json, anytimeResult);
+        if(printMetrics && metrics != null){
+            json.append(",\"metrics\":{");
+            json.append("\"sweeps\":").append(metrics.getNumSweeps());
+            json.append(",\"backups\":").append(metrics.getNumBackups());
+            json.append(",\"sweepNanos\":").append(metrics.getSweepNanos());
+            json.append(",\"backupsPerSecond\":").append((long) metrics.getBackupsPerSecond());
+            json.append('}');
+        }
+        json.append('}');
+        out.println(json);
+    }
+
+    /**
+     * Budget of the anytime solver, counting the time limit from the given start time, when the world
+     * has been read. A negative deadline means there is none. If the deadline has already passed, the
+     * budget ends now, and the solver makes its single sweep.
+     */
+    private static AnytimeSolver.Budget createBudget(long startTime, long deadlineMillis, long maxBackups){
+        if(deadlineMillis < 0){
+            return AnytimeSolver.Budget.withBackupLimit(maxBackups);
+        }
+        long elapsedNanos = System.nanoTime() - startTime;
+        long remainingNanos = Math.max(0, TimeUnit.MILLISECONDS.toNanos(deadlineMillis) - elapsedNanos);
+        return AnytimeSolver.Budget.withLimits(remainingNanos, TimeUnit.NANOSECONDS, maxBackups);
+    }
+
+    /**
+     * Append how the anytime solver stopped, and its error bounds, if it was used.
+     */
+    private static void appendAnytimeResult(StringBuilder json, AnytimeSolver.Result result){
+        if(result == null){
+            return;
+        }
+        json.append(",\"stopReason\":").append(quote(result.getStopReason().toString()));
+        json.append(",\"delta\":").append(result.getDelta());
+        json.append(",\"errorBound\":").append(result.getErrorBound());
+        json.append(",\"policyLossBound\":").append(result.getPolicyLossBound());
+    }
+
+    /**
+     * Read a world file. Stores the number of rows and columns into dimensions, and returns the rewards
+     * in row-major order with NaN for walls.
+     * @param worldFile
+     * @param dimensions
+     * @return
+     * @throws IOException
+     */
+    static double[] readWorld(String worldFile, int[] dimensions) throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(worldFile));
+        try{
+            double[] rewardArray = null;
+            int numTokens = 0;
+            int numCells = 0;
+
+            String line;
+            while((line = reader.readLine()) != null){
+                for(String token : line.trim().split("\\s+")){
+                    if(token.isEmpty()){
+                        continue;
+                    }
+                    if(numTokens < 2){
+                        dimensions[numTokens] = Integer.parseInt(token);
+                        if(numTokens == 1){
+                            numCells = dimensions[0] * dimensions[1];
+                            rewardArray = new double[numCells];
+                        }
+                    }
+                    else if(numTokens - 2 < numCells){
+                        rewardArray[numTokens - 2] = token.equalsIgnoreCase("W") ? Double.NaN : Double.parseDouble(token);
+                    }
+                    else{
+                        throw new IOException("Too many cells in " + worldFile);
+                    }
+                    numTokens++;
+                }
+            }
+
+            if(rewardArray == null || numTokens - 2 != numCells){
+                throw new IOException("Expected " + numCells + " cells in " + worldFile + ", found " + Math.max(0, numTokens - 2));
+            }
+            return rewardArray;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static String quote(String value){
+        StringBuilder quoted = new StringBuilder("\"");
+        for(char c : value.toCharArray()){
+            if(c == '"' || c == '\\'){
+                quoted.append('\\').append(c);
+            }
+            else if(c < 0x20){
+                quoted.append(String.format("\\u%04x", (int) c));
+            }
+            else{
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,159 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+public class LiveView extends JPanel {
+
+    /**
+     * This class shows the progress of a solve while it runs. A Swing timer on the event dispatch thread
+     * takes the latest frame from a SolutionPublisher, draws it as a utility heatmap (with policy arrows
+     * once the cells are large enough) into an image, and gives the frame back straight away. Frames
+     * published between two ticks are dropped, so the solver never waits for the display.
+     */
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Interval between two checks for a new frame.
+     */
+    private static final int FRAME_INTERVAL_MS = 33;
+
+    private CompactStateSpace mStateSpace;
+
+    private SolutionPublisher mPublisher;
+
+    /**
+     * State index of every cell in row-major order, or -1 for walls.
+     */
+    private int[] mCellStates;
+
+    /**
+     * Image of the last frame drawn, and its status line.
+     */
+    private BufferedImage mImage;
+    private JLabel mStatusLabel;
+
+    private Timer mTimer;
+
+    private LiveView(CompactStateSpace stateSpace, SolutionPublisher publisher, JLabel statusLabel){
+        mStateSpace = stateSpace;
+        mPublisher = publisher;
+        mStatusLabel = statusLabel;
+
+        mCellStates = new int[stateSpace.getNumRows() * stateSpace.getNumCols()];
+        Arrays.fill(mCellStates, -1);
+        for(int s = 0; s < stateSpace.getNumStates(); ++s){
+            mCellStates[stateSpace.getCell(s)] = s;
+        }
+
+        setBackground(Color.WHITE);
+        mTimer = new Timer(FRAME_INTERVAL_MS, event -> showLatestFrame());
+    }
+
+    /**
+     * Open a window that shows the frames of the given publisher. Can be called from any thread.
+     * @param title
+     * @param stateSpace
+     * @param publisher
+     * @param xCoord
+     * @param yCoord
+     */
+    public static void open(String title, CompactStateSpace stateSpace, SolutionPublisher publisher, int xCoord, int yCoord){
+        SwingUtilities.invokeLater(() -> {
+            JFrame frame = new JFrame();
+            frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+            frame.setBounds(xCoord, yCoord, 600, 620);
+            frame.setTitle("Grid World - " + title);
+
+            JLabel statusLabel = new JLabel("Waiting for the first sweep");
+            LiveView view = new LiveView(stateSpace, publisher, statusLabel);
+            frame.getContentPane().setLayout(new BorderLayout());
+            frame.getContentPane().add(view, BorderLayout.CENTER);
+            frame.getContentPane().add(statusLabel, BorderLayout.SOUTH);
+
+            frame.addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowClosed(WindowEvent e) {
+                    view.mTimer.stop();
+                }
+            });
+            frame.setVisible(true);
+            view.mTimer.start();
+        });
+    }
+
+    /**
+     * Draw the latest frame, if there is one, and give it back to the publisher.
+     */
+    private void showLatestFrame(){
+        SolutionPublisher.Frame frame = mPublisher.take();
+        if(frame == null){
+            return;
+        }
+        try{
+            mImage = render(frame, Math.max(1, getWidth()), Math.max(1, getHeight()));
+            mStatusLabel.setText("Sweep " + frame.getSweep() + ", delta = " + frame.getDelta() +
+                    ", frames published: " + mPublisher.getNumPublished());
+        } finally {
+            mPublisher.release(frame);
+        }
+        repaint();
+    }
+
+    /**
+     * Render a frame into an image of the given size, scaling the grid to fit.
+     */
+    private BufferedImage render(SolutionPublisher.Frame frame, int width, int height){
+        int numRows = mStateSpace.getNumRows();
+        int numCols = mStateSpace.getNumCols();
+        double cellPixels = Math.min((double) width / numCols, (double) height / numRows);
+        int imageWidth = Math.max(1, (int) (numCols * cellPixels));
+        int imageHeight = Math.max(1, (int) (numRows * cellPixels));
+
+        BufferedImage image = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+        double minUtility = frame.getMinUtility();
+        double range = frame.getMaxUtility() - minUtility;
+
+        int[] cols = new int[imageWidth];
+        for(int px = 0; px < imageWidth; ++px){
+            cols[px] = Math.min(numCols - 1, (int) (px / cellPixels));
+        }
+        for(int py = 0; py < imageHeight; ++py){
+            int rowOffset = Math.min(numRows - 1, (int) (py / cellPixels)) * numCols;
+            for(int px = 0; px < imageWidth; ++px){
+                int s = mCellStates[rowOffset + cols[px]];
+                pixels[py * imageWidth + px] = s < 0 ? TileRenderer.WALL_RGB :
+                        TileRenderer.getHeatmapRGB(range > 0 ? (frame.getUtility(s) - minUtility) / range : 0.5);
+            }
+        }
+
+        if(cellPixels >= TileRenderer.MIN_ICON_CELL_SIZE){
+            int iconSize = (int) (cellPixels * 0.6);
+            BufferedImage[] icons = TileRenderer.getScaledIcons(iconSize);
+            Graphics2D graphics = image.createGraphics();
+            for(int s = 0; s < mStateSpace.getNumStates(); ++s){
+                int action = frame.hasPolicy() ? frame.getAction(s) : mStateSpace.getBestAction(frame.getUtilities(), s);
+                int row = mStateSpace.getCell(s) / numCols;
+                int col = mStateSpace.getCell(s) % numCols;
+                graphics.drawImage(icons[action], (int) Math.round(col * cellPixels + (cellPixels - iconSize) / 2),
+                        (int) Math.round(row * cellPixels + (cellPixels - iconSize) / 2), null);
+            }
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if(mImage != null){
+            g.drawImage(mImage, 0, 0, null);
+        }
+    }
+}
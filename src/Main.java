@@ -1,8 +1,14 @@
-import javafx.util.Pair;
-
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class Main {
+
+    /**
+     * Seed from which the seed of every random GridWorld is derived.
+     */
+    private static final long BASE_SEED = 42;
+
     public static void main(String[] args) {
         /**
          * Part I: Using Policy Iteration and Value Iteration to calculate the optimal policy
@@ -23,6 +29,11 @@ public class Main {
          */
         GridWorld gridWorld = new GridWorld(6, rewardArray);
 
+        /**
+         * The progress of the solves is only shown live when asked for with --live.
+         */
+        gridWorld.setShowLiveView(Arrays.asList(args).contains("--live"));
+
         /**
          * Invoke Policy Iteration on the GridWorld.
          */
@@ -54,107 +65,222 @@ public class Main {
          * Try to find optimal policies in random and more complex GridWorlds.
          */
         findPolicyInRandomWorlds(epsilonPairList);
+
+        /**
+         * Part III: Comparing single, mixed and double precision storage of the utility values.
+         */
+        comparePrecisionModes(epsilonPairList);
     }
 
     /**
      * Create random GridWorlds and try to find the optimal policies via both Policy Iteration and
-     * Value Iteration.
+     * Value Iteration. Value Iteration solves every GridWorld once down the whole list of precision
+     * values, taking a snapshot at each one instead of starting again from zero, so the Value Iteration
+     * result of every precision value is read from its snapshot. For every precision value, also report
+     * the total number of iterations and the number of states whose policy changed since the previous one,
+     * and for every GridWorld, the precision value from which its policy did not change any more.
      * @param epsilonPairList
      */
     private static void findPolicyInRandomWorlds(ArrayList<Pair<Double, Double>> epsilonPairList){
 
-        GridWorld randomGridWorld;
         double[] randomRewardArray;
+        CompactStateSpace stateSpace;
+        ContinuationSolver ladderSolver;
+        List<ContinuationSolver.Step> steps;
+
+        int numPairs = epsilonPairList.size();
+        double[] epsilons = new double[numPairs];
+        for(int k = 0; k < numPairs; ++k){
+            epsilons[k] = epsilonPairList.get(k).getValue();
+        }
 
-        ArrayList<String> solvedMDPs;
-        ArrayList<String> unSolvedMDPs;
+        ArrayList<ArrayList<String>> solvedMDPs = new ArrayList<ArrayList<String>>();
+        ArrayList<ArrayList<String>> unSolvedMDPs = new ArrayList<ArrayList<String>>();
+        for(int k = 0; k < numPairs; ++k){
+            solvedMDPs.add(new ArrayList<String>());
+            unSolvedMDPs.add(new ArrayList<String>());
+        }
+        int[] numSweepsSaved = new int[numPairs];
+        int[] numIterations = new int[numPairs];
+        int[] numPolicyChanges = new int[numPairs];
+        ArrayList<String> stablePrecisions = new ArrayList<String>();
 
+        int[] numPairIter;
         int numPolicyIter;
         int numValueIter;
-
-        for(Pair<Double, Double> epsilonPair : epsilonPairList){
-
-            solvedMDPs = new ArrayList<String>();
-            unSolvedMDPs = new ArrayList<String>();
-
-            for(int numRows = 10; numRows <= 20; numRows += 2){
-                for(int numCols = 10; numCols <= 20; numCols += 2){
-                    randomRewardArray = getRandomRewardArray(numRows, numCols);
-                    randomGridWorld = new GridWorld(numRows, numCols, randomRewardArray);
-
-                    numPolicyIter = randomGridWorld.policyIteration(false, false, epsilonPair.getKey());
-                    numValueIter = randomGridWorld.valueIteration(false, false, epsilonPair.getValue());
-
-                    if(randomGridWorld.mPolicyIterationMap.equals(randomGridWorld.mValueIterationMap)){
-                        solvedMDPs.add("(" + numRows + "x" + numCols + ") = " + numRows * numCols +
-                                " Policy Iteration = " + numPolicyIter + " Value Iteration = " + numValueIter);
+        int numAcceleratedValueIter;
+        int[] policy;
+        boolean policiesMatch;
+
+        for(int numRows = 10; numRows <= 20; numRows += 2){
+            for(int numCols = 10; numCols <= 20; numCols += 2){
+                randomRewardArray = getRandomRewardArray(numRows, numCols, 0);
+                stateSpace = new CompactStateSpace(numRows, numCols, randomRewardArray);
+
+                ladderSolver = new ContinuationSolver(stateSpace, 0.99, epsilons);
+                steps = ladderSolver.valueIteration();
+                stablePrecisions.add("(" + numRows + "x" + numCols + ") = " + ladderSolver.getStableStep().getEpsilon());
+
+                for(int k = 0; k < numPairs; ++k){
+                    Pair<Double, Double> epsilonPair = epsilonPairList.get(k);
+                    ContinuationSolver.Step step = steps.get(k);
+
+                    policy = new int[stateSpace.getNumStates()];
+                    numPairIter = solveEpsilonPair(numRows, numCols, randomRewardArray, epsilonPair, stateSpace, policy);
+                    numPolicyIter = numPairIter[0];
+                    numAcceleratedValueIter = numPairIter[1];
+
+                    numValueIter = step.getNumIterations();
+                    policiesMatch = Arrays.equals(policy, step.getPolicy());
+                    numIterations[k] += numValueIter;
+                    numPolicyChanges[k] += step.getNumPolicyChanges();
+                    numSweepsSaved[k] += numValueIter - numAcceleratedValueIter;
+
+                    if(policiesMatch){
+                        solvedMDPs.get(k).add("(" + numRows + "x" + numCols + ") = " + numRows * numCols +
+                                " Policy Iteration = " + numPolicyIter + " Value Iteration = " + numValueIter +
+                                " Accelerated Value Iteration = " + numAcceleratedValueIter);
                     }
                     else{
-                        unSolvedMDPs.add("(" + numRows + "x" + numCols + ") = " + numRows * numCols);
+                        unSolvedMDPs.get(k).add("(" + numRows + "x" + numCols + ") = " + numRows * numCols);
                     }
-
                 }
             }
+        }
+
+        for(int k = 0; k < numPairs; ++k){
+            Pair<Double, Double> epsilonPair = epsilonPairList.get(k);
 
             System.out.println("Precision Values: (" + epsilonPair.getKey() + ", " + epsilonPair.getValue() + ") Solved = " +
-                    solvedMDPs.size() + " Unsolved = " + unSolvedMDPs.size());
+                    solvedMDPs.get(k).size() + " Unsolved = " + unSolvedMDPs.get(k).size() +
+                    " Sweeps saved by acceleration = " + numSweepsSaved[k]);
 
-            if(solvedMDPs.size() != 0)
+            if(solvedMDPs.get(k).size() != 0)
                 System.out.println("Solved MDPs");
 
-            for(String stringIterator : solvedMDPs)
+            for(String stringIterator : solvedMDPs.get(k))
                 System.out.println(stringIterator);
 
-            if(unSolvedMDPs.size() != 0)
+            if(unSolvedMDPs.get(k).size() != 0)
                 System.out.println("\nUnsolved MDPs");
 
-            for(String stringIterator : unSolvedMDPs)
+            for(String stringIterator : unSolvedMDPs.get(k))
                 System.out.print(stringIterator + " ");
 
             System.out.println("\n");
         }
 
+        System.out.println("Value Iteration down all precision values in one solve");
+        for(int k = 0; k < numPairs; ++k){
+            System.out.println("Precision Value: " + epsilons[k] + " iterations = " + numIterations[k] +
+                    " policy changes = " + numPolicyChanges[k]);
+        }
+        System.out.println("Precision value from which the policy is stable");
+        for(String stringIterator : stablePrecisions)
+            System.out.print(stringIterator + " ");
+        System.out.println("\n");
     }
 
     /**
-     * Returns a list of randomly selected state rewards for a GridWorld object.
+     * Solve a fresh GridWorld with the given rewards via Policy Iteration, and via Value Iteration with
+     * Anderson acceleration for comparison against plain Value Iteration. Every pair of precision values
+     * gets its own GridWorld, so its results never depend on the pairs solved before it. Stores into policy
+     * the best action of every state (by index in stateSpace) for the Policy Iteration utility values,
+     * chosen as by CompactStateSpace.improvePolicy, so it can be compared with the Value Iteration policies
+     * of the same state space without ties counting as differences. Returns the number of iterations of
+     * Policy Iteration and of Accelerated Value Iteration.
      * @param numRows
      * @param numCols
-     * @return an array of reward values for State objects.
+     * @param rewardArray
+     * @param epsilonPair
+     * @param stateSpace
+     * @param policy
+     * @return
      */
-    private static double[] getRandomRewardArray(int numRows, int numCols){
-        int numItems = numRows * numCols;
-        double[] rewardArray = new double[numItems];
-
-        for(int i = 0; i < numItems; ++i){
-            rewardArray[i] = randomFill();
+    static int[] solveEpsilonPair(int numRows, int numCols, double[] rewardArray, Pair<Double, Double> epsilonPair,
+                                  CompactStateSpace stateSpace, int[] policy){
+        GridWorld gridWorld = new GridWorld(numRows, numCols, rewardArray);
+        int numPolicyIter = gridWorld.policyIteration(false, false, epsilonPair.getKey());
+
+        double[] utilityArray = gridWorld.getPolicyIterationSnapshot().toUtilityArray();
+        double[] utilities = new double[stateSpace.getNumStates()];
+        for(int s = 0; s < utilities.length; ++s){
+            utilities[s] = utilityArray[stateSpace.getCell(s)];
         }
-        return rewardArray;
+        stateSpace.improvePolicy(utilities, policy);
+
+        int numAcceleratedValueIter = gridWorld.acceleratedValueIteration(false, false, epsilonPair.getValue());
+        return new int[]{numPolicyIter, numAcceleratedValueIter};
     }
 
     /**
-     * Randomly returns a reward value for a State object.
-     * @return
+     * Solve random GridWorlds via Value Iteration with the utility values stored in double, float and
+     * mixed precision. For every precision value, report the number of single and double precision
+     * sweeps, the final precision reached and the number of states whose policy differs from the
+     * pure double precision run.
+     * @param epsilonPairList
      */
-    private static double randomFill(){
-        int randNum = (int)(Math.random() * 4);
+    private static void comparePrecisionModes(ArrayList<Pair<Double, Double>> epsilonPairList){
+        /**
+         * Double precision comes first, since its policy is the reference for the other modes.
+         */
+        PrecisionSolver.Precision[] precisions = {PrecisionSolver.Precision.DOUBLE, PrecisionSolver.Precision.FLOAT,
+                PrecisionSolver.Precision.MIXED};
 
-        switch(randNum){
-            case 0:{
-                return Double.NaN;
-            }
-            case 1:{
-                return 1.0;
-            }
-            case 2:{
-                return -1.0;
+        for(int trial = 0; trial < epsilonPairList.size(); ++trial){
+            double epsilon = epsilonPairList.get(trial).getValue();
+
+            int[] numFloatSweeps = new int[precisions.length];
+            int[] numDoubleSweeps = new int[precisions.length];
+            double[] finalDelta = new double[precisions.length];
+            int[] numPolicyDifferences = new int[precisions.length];
+
+            for(int numRows = 10; numRows <= 20; numRows += 2){
+                for(int numCols = 10; numCols <= 20; numCols += 2){
+                    double[] randomRewardArray = getRandomRewardArray(numRows, numCols, trial);
+                    PrecisionSolver solver = new PrecisionSolver(
+                            new CompactStateSpace(numRows, numCols, randomRewardArray), 0.99);
+
+                    int[] doublePolicy = null;
+                    for(int p = 0; p < precisions.length; ++p){
+                        solver.valueIteration(precisions[p], epsilon);
+                        if(precisions[p] == PrecisionSolver.Precision.DOUBLE){
+                            doublePolicy = solver.getPolicy();
+                        }
+                        numFloatSweeps[p] += solver.getNumFloatSweeps();
+                        numDoubleSweeps[p] += solver.getNumDoubleSweeps();
+                        finalDelta[p] = Math.max(finalDelta[p], solver.getFinalDelta());
+                        numPolicyDifferences[p] += PrecisionSolver.countDifferences(doublePolicy, solver.getPolicy());
+                    }
+                }
             }
-            default: {
-                return -0.04;
+
+            System.out.println("Precision Value: " + epsilon);
+            for(int p = 0; p < precisions.length; ++p){
+                System.out.println(precisions[p] + ": float sweeps = " + numFloatSweeps[p] +
+                        " double sweeps = " + numDoubleSweeps[p] +
+                        " final delta = " + finalDelta[p] +
+                        " policy differences = " + numPolicyDifferences[p]);
             }
+            System.out.println();
         }
     }
 
+    /**
+     * Returns a list of randomly selected state rewards for a GridWorld object.
+     * A quarter of the cells are walls, and the rest are split evenly between rewards of 1, -1 and -0.04.
+     * Every size and trial gets its own world, generated from a seed derived from BASE_SEED, so runs can
+     * be reproduced.
+     * @param numRows
+     * @param numCols
+     * @param trial
+     * @return an array of reward values for State objects.
+     */
+    private static double[] getRandomRewardArray(int numRows, int numCols, int trial){
+        long seed = WorldGenerator.deriveSeed(BASE_SEED, numRows, numCols, trial);
+        return new WorldGenerator(seed, 0.25, 0.25, 0.25).generateRewardArray(numRows, numCols);
+    }
+
     /**
      * Return a list of pairs of epsilon values to be used for convergence tests in Policy Evaluation Step
      * and Value Iteration Steps.
@@ -0,0 +1,27 @@
+public class Pair<K, V> {
+
+    /**
+     * A simple immutable pair of values.
+     */
+
+    private final K mKey;
+    private final V mValue;
+
+    /**
+     * Constructor for the Pair object.
+     * @param key
+     * @param value
+     */
+    public Pair(K key, V value){
+        mKey = key;
+        mValue = value;
+    }
+
+    public K getKey() {
+        return mKey;
+    }
+
+    public V getValue() {
+        return mValue;
+    }
+}
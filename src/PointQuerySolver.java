@@ -0,0 +1,384 @@
+import java.util.Arrays;
+
+public class PointQuerySolver {
+
+    /**
+     * This class answers point queries (the best action from a single start state) with ILAO*, a
+     * heuristic search in the style of LAO*, over a CompactStateSpace instead of solving every state.
+     * Every utility value starts at an admissible (optimistic) bound, based on the distance to the
+     * nearest state with the highest reward. The solver keeps a partial policy: the greedy action of
+     * every state reachable from the start state under the greedy actions. Every pass searches this
+     * partial policy depth-first, adding the states newly reached, and backs up its states in postorder.
+     * States are only ever expanded once the greedy policy reaches them, so most of the world is never
+     * touched. When a whole pass has a Bellman residual below epsilon, the states of the partial policy
+     * are labelled as solved and the query has converged.
+     * Utility values and labels are kept between queries with the same epsilon, since the values stay
+     * admissible and solved states stay solved, so later queries reuse the work of earlier ones.
+     */
+
+    private CompactStateSpace mStateSpace;
+
+    private double mDiscountFactor;
+
+    /**
+     * Admissible initial utility value of every state.
+     */
+    private double[] mUpperBounds;
+
+    /**
+     * Utility value of every state, and whether its value has converged for mEpsilon.
+     */
+    private double[] mUtilities;
+    private boolean[] mSolved;
+    private double mEpsilon;
+
+    /**
+     * Marks the states already reached by the current search, by search number, so that nothing has to be
+     * cleared between searches.
+     */
+    private int[] mVisitMark;
+    private int mNumSearches;
+
+    /**
+     * Reusable stacks for the depth-first searches, grown as needed: the search path with the greedy
+     * action and the next direction to explore of every state on it, and the states in postorder.
+     */
+    private int[] mCallStack;
+    private int[] mCallAction;
+    private int[] mNextDirection;
+    private int[] mPostOrder;
+
+    /**
+     * Largest Bellman residual in the last pass.
+     */
+    private double mMaxResidual;
+
+    /**
+     * Statistics of all queries since the last reset.
+     */
+    private long mNumBackups;
+    private int mNumIterations;
+
+    /**
+     * Constructor for the PointQuerySolver object.
+     * @param stateSpace
+     * @param discountFactor
+     */
+    public PointQuerySolver(CompactStateSpace stateSpace, double discountFactor){
+        mStateSpace = stateSpace;
+        mDiscountFactor = discountFactor;
+
+        int numStates = stateSpace.getNumStates();
+        mUtilities = new double[numStates];
+        mSolved = new boolean[numStates];
+        mVisitMark = new int[numStates];
+        mCallStack = new int[64];
+        mCallAction = new int[64];
+        mNextDirection = new int[64];
+        mPostOrder = new int[64];
+        computeUpperBounds();
+        reset();
+    }
+
+    /**
+     * Admissible bound on the utility value of every state. A state at distance d (in moves) from the
+     * nearest state with the highest reward rMax collects at most the second highest reward rNext for
+     * d steps and rMax afterwards, so its utility value is at most
+     * rNext * (1 - discount^d) / (1 - discount) + discount^d * rMax / (1 - discount).
+     * The distances are found with a single breadth-first search from all the states with reward rMax.
+     */
+    private void computeUpperBounds(){
+        int numStates = mStateSpace.getNumStates();
+        mUpperBounds = new double[numStates];
+
+        double maxReward = Double.NEGATIVE_INFINITY;
+        for(int s = 0; s < numStates; ++s){
+            maxReward = Math.max(maxReward, mStateSpace.getReward(s));
+        }
+        double nextReward = Double.NEGATIVE_INFINITY;
+        for(int s = 0; s < numStates; ++s){
+            if(mStateSpace.getReward(s) < maxReward){
+                nextReward = Math.max(nextReward, mStateSpace.getReward(s));
+            }
+        }
+        if(nextReward == Double.NEGATIVE_INFINITY){
+            nextReward = maxReward;
+        }
+
+        int[] distance = new int[numStates];
+        int[] queue = new int[numStates];
+        Arrays.fill(distance, -1);
+        int head = 0;
+        int tail = 0;
+        for(int s = 0; s < numStates; ++s){
+            if(mStateSpace.getReward(s) == maxReward){
+                distance[s] = 0;
+                queue[tail++] = s;
+            }
+        }
+        while(head < tail){
+            int s = queue[head++];
+            for(int direction = 0; direction < CompactStateSpace.NUM_DIRECTIONS; ++direction){
+                int next = mStateSpace.getNeighbour(s, direction);
+                if(distance[next] < 0){
+                    distance[next] = distance[s] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        double maxBound = maxReward / (1.0 - mDiscountFactor);
+        double nextBound = nextReward / (1.0 - mDiscountFactor);
+        for(int s = 0; s < numStates; ++s){
+            if(distance[s] < 0){
+                /**
+                 * No state with reward rMax can be reached, so rNext is the best reward for ever.
+                 */
+                mUpperBounds[s] = nextBound;
+            }
+            else{
+                double discount = Math.pow(mDiscountFactor, distance[s]);
+                mUpperBounds[s] = nextBound + discount * (maxBound - nextBound);
+            }
+        }
+    }
+
+    /**
+     * Forget all utility values and labels.
+     */
+    public void reset(){
+        System.arraycopy(mUpperBounds, 0, mUtilities, 0, mUtilities.length);
+        Arrays.fill(mSolved, false);
+        Arrays.fill(mVisitMark, 0);
+        mNumSearches = 0;
+        mEpsilon = Double.NaN;
+        mNumBackups = 0;
+        mNumIterations = 0;
+    }
+
+    /**
+     * Solve for the best action from startState, iterating until the start state is solved.
+     * @param startState
+     * @param epsilon
+     * @return
+     */
+    public PartialPolicy solve(int startState, double epsilon){
+        return solve(startState, epsilon, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Solve for the best action from startState, running at most maxIterations passes over the best
+     * partial policy. If the start state is not solved within the budget, the returned policy is the
+     * current greedy policy and is labelled as not converged.
+     * @param startState
+     * @param epsilon
+     * @param maxIterations
+     * @return
+     */
+    public PartialPolicy solve(int startState, double epsilon, int maxIterations){
+        if(epsilon != mEpsilon){
+            /**
+             * Labels only hold for the epsilon they were computed with. The values remain admissible.
+             */
+            Arrays.fill(mSolved, false);
+            mEpsilon = epsilon;
+        }
+
+        for(int iteration = 0; iteration < maxIterations && !mSolved[startState]; ++iteration){
+            mNumIterations++;
+            int numPolicyStates = improvePartialPolicy(startState);
+            if(mMaxResidual < epsilon){
+                /**
+                 * Every state reachable from the start state under the greedy policy has converged.
+                 */
+                for(int k = 0; k < numPolicyStates; ++k){
+                    mSolved[mPostOrder[k]] = true;
+                }
+            }
+        }
+        return getPartialPolicy(startState);
+    }
+
+    /**
+     * One pass of ILAO*: a depth-first search from startState over the states reachable under the current
+     * greedy policy, stopping at solved states, which backs up every state in postorder (i.e. after the
+     * states it leads to). The greedy action of a state is chosen when it is first reached, so states
+     * that become reachable through a changed action are added to the partial policy in the same pass.
+     * Returns the number of states visited, which are stored in mPostOrder, and sets mMaxResidual.
+     * @param startState
+     * @return
+     */
+    private int improvePartialPolicy(int startState){
+        int mark = ++mNumSearches;
+        int depth = 0;
+        int numVisited = 0;
+        mMaxResidual = 0.0;
+
+        mVisitMark[startState] = mark;
+        mCallStack = push(mCallStack, depth, startState);
+        mNextDirection = push(mNextDirection, depth, 0);
+        mCallAction = push(mCallAction, depth, mStateSpace.getBestAction(mUtilities, startState));
+        depth++;
+
+        while(depth > 0){
+            int s = mCallStack[depth - 1];
+            int action = mCallAction[depth - 1];
+
+            if(mNextDirection[depth - 1] < CompactStateSpace.NUM_DIRECTIONS){
+                int direction = mNextDirection[depth - 1]++;
+                if(Action.getDirectionProb(action, direction) == 0.0){
+                    continue;
+                }
+                int next = mStateSpace.getNeighbour(s, direction);
+                if(!mSolved[next] && mVisitMark[next] != mark){
+                    mVisitMark[next] = mark;
+                    mCallStack = push(mCallStack, depth, next);
+                    mNextDirection = push(mNextDirection, depth, 0);
+                    mCallAction = push(mCallAction, depth, mStateSpace.getBestAction(mUtilities, next));
+                    depth++;
+                }
+                continue;
+            }
+
+            depth--;
+            mPostOrder = push(mPostOrder, numVisited++, s);
+
+            double stateUtility = mStateSpace.getReward(s) + mDiscountFactor * mStateSpace.getMaximumExpectedUtility(mUtilities, s);
+            mMaxResidual = Math.max(mMaxResidual, Math.abs(stateUtility - mUtilities[s]));
+            mUtilities[s] = stateUtility;
+            mNumBackups++;
+        }
+        return numVisited;
+    }
+
+    /**
+     * Greedy policy over the states reachable from startState under it.
+     * @param startState
+     * @return
+     */
+    private PartialPolicy getPartialPolicy(int startState){
+        int mark = ++mNumSearches;
+        int numOpen = 0;
+        int numClosed = 0;
+
+        mCallStack = push(mCallStack, numOpen++, startState);
+        mVisitMark[startState] = mark;
+
+        while(numOpen > 0){
+            int t = mCallStack[--numOpen];
+            mPostOrder = push(mPostOrder, numClosed++, t);
+
+            int action = mStateSpace.getBestAction(mUtilities, t);
+            for(int direction = 0; direction < CompactStateSpace.NUM_DIRECTIONS; ++direction){
+                if(Action.getDirectionProb(action, direction) == 0.0){
+                    continue;
+                }
+                int next = mStateSpace.getNeighbour(t, direction);
+                if(mVisitMark[next] != mark){
+                    mVisitMark[next] = mark;
+                    mCallStack = push(mCallStack, numOpen++, next);
+                }
+            }
+        }
+
+        int[] states = Arrays.copyOf(mPostOrder, numClosed);
+        Arrays.sort(states);
+        int[] actions = new int[numClosed];
+        double[] utilities = new double[numClosed];
+        for(int k = 0; k < numClosed; ++k){
+            actions[k] = mStateSpace.getBestAction(mUtilities, states[k]);
+            utilities[k] = mUtilities[states[k]];
+        }
+        return new PartialPolicy(startState, states, actions, utilities, mSolved[startState]);
+    }
+
+    /**
+     * Store value at position index of stack, growing the stack if needed. Returns the (possibly new) stack.
+     */
+    private static int[] push(int[] stack, int index, int value){
+        if(index == stack.length){
+            stack = Arrays.copyOf(stack, 2 * stack.length);
+        }
+        stack[index] = value;
+        return stack;
+    }
+
+    public long getNumBackups() {
+        return mNumBackups;
+    }
+
+    public int getNumIterations() {
+        return mNumIterations;
+    }
+
+    /**
+     * Immutable result of a point query: the greedy action and utility value of every state reachable
+     * from the start state under the greedy policy, and whether the start state has converged.
+     */
+    public static class PartialPolicy {
+
+        private final int mStartState;
+
+        /**
+         * States covered by the policy in increasing order, with their actions and utility values.
+         */
+        private final int[] mStates;
+        private final int[] mActions;
+        private final double[] mUtilities;
+
+        private final boolean mConverged;
+
+        private PartialPolicy(int startState, int[] states, int[] actions, double[] utilities, boolean converged){
+            mStartState = startState;
+            mStates = states;
+            mActions = actions;
+            mUtilities = utilities;
+            mConverged = converged;
+        }
+
+        /**
+         * Return the action for state s, or -1 if s is not covered by the policy.
+         * @param s
+         * @return
+         */
+        public int getAction(int s){
+            int k = Arrays.binarySearch(mStates, s);
+            return k < 0 ? -1 : mActions[k];
+        }
+
+        /**
+         * Return the utility value of state s, or NaN if s is not covered by the policy.
+         * @param s
+         * @return
+         */
+        public double getUtility(int s){
+            int k = Arrays.binarySearch(mStates, s);
+            return k < 0 ? Double.NaN : mUtilities[k];
+        }
+
+        public int getStartState() {
+            return mStartState;
+        }
+
+        public int getStartAction() {
+            return getAction(mStartState);
+        }
+
+        public int[] getStates() {
+            return mStates.clone();
+        }
+
+        public int getNumStates() {
+            return mStates.length;
+        }
+
+        /**
+         * Whether the start state was labelled as solved, i.e. every state in the policy has a residual
+         * below epsilon.
+         * @return
+         */
+        public boolean isConverged() {
+            return mConverged;
+        }
+    }
+}
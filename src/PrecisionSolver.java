@@ -0,0 +1,384 @@
+import java.util.Arrays;
+
+public class PrecisionSolver {
+
+    /**
+     * This class implements Value Iteration and Policy Iteration over the flat arrays of a
+     * StateSpace (a CompactStateSpace or a GridSpace), with the utility values stored either in double
+     * precision or in single precision (float32). Single precision halves the number of bytes streamed
+     * per state in every sweep, but cannot resolve changes smaller than the float rounding error of the
+     * utility values. The MIXED precision mode therefore sweeps in single precision until the float
+     * rounding error is reached, and then refines the solution in double precision down to the requested
+     * epsilon. A single precision phase ends as soon as delta is within FLOAT_ROUNDING_ULPS float ulps of
+     * the largest utility value, since smaller changes are rounding noise.
+     */
+
+    /**
+     * Storage modes for the utility values.
+     */
+    public enum Precision {
+        DOUBLE,
+        FLOAT,
+        MIXED
+    }
+
+    /**
+     * Number of float ulps of the largest utility value below which the delta of a single precision
+     * sweep is considered to be rounding error.
+     */
+    private static final int FLOAT_ROUNDING_ULPS = 16;
+
+    /**
+     * Number of consecutive sweeps without a decrease in delta after which a single precision
+     * phase is considered to have stalled on rounding error, as a safeguard.
+     */
+    private static final int FLOAT_STALL_SWEEPS = 10;
+
+    private StateSpace mStateSpace;
+
+    private double mDiscountFactor;
+
+    /**
+     * Rewards for the states in single precision, and the rounding error of a float utility value as
+     * large as any utility value can be (max |reward| / (1 - discount factor)). Built on the first single
+     * precision solve.
+     */
+    private float[] mFloatRewards;
+    private double mMaxFloatRoundingError;
+
+    /**
+     * Utility values and best actions (indices into UP, RIGHT, DOWN, LEFT) of the states
+     * (see StateSpace) from the last solve.
+     */
+    private double[] mUtilities;
+    private int[] mPolicy;
+
+    /**
+     * Statistics of the last solve.
+     */
+    private int mNumFloatSweeps;
+    private int mNumDoubleSweeps;
+    private double mFinalDelta;
+
+    /**
+     * Performance metrics of the last solve.
+     */
+    private SolverMetrics mMetrics;
+
+    /**
+     * Receives intermediate solutions for a live view, if set.
+     */
+    private SolutionPublisher mPublisher;
+
+    /**
+     * Constructor for the PrecisionSolver object.
+     * @param stateSpace
+     * @param discountFactor
+     */
+    public PrecisionSolver(StateSpace stateSpace, double discountFactor){
+        mStateSpace = stateSpace;
+        mDiscountFactor = discountFactor;
+        mMetrics = new SolverMetrics();
+    }
+
+    /**
+     * Measure the memory allocated during sweeps in the metrics (see SolverMetrics). Off by default.
+     * @param trackAllocations
+     */
+    public void setTrackAllocations(boolean trackAllocations){
+        mMetrics.setTrackAllocations(trackAllocations);
+    }
+
+    /**
+     * Publish the utility values after sweeps, at the rate allowed by the publisher, and the final
+     * solution of every solve. Pass null to stop publishing.
+     * @param publisher
+     */
+    public void setPublisher(SolutionPublisher publisher){
+        mPublisher = publisher;
+    }
+
+    /**
+     * Value Iteration with utility values stored in the given precision.
+     * Returns the total number of sweeps.
+     * @param precision
+     * @param epsilon
+     * @return
+     */
+    public int valueIteration(Precision precision, double epsilon){
+        return valueIteration(precision, epsilon, null);
+    }
+
+    /**
+     * Value Iteration with utility values stored in the given precision, warm-started from the given
+     * utility values (e.g. the solution of a slightly different model), or from zero if they are null.
+     * Returns the total number of sweeps.
+     * @param precision
+     * @param epsilon
+     * @param initialUtilities
+     * @return
+     */
+    public int valueIteration(Precision precision, double epsilon, double[] initialUtilities){
+        mMetrics.beginSolve("Value Iteration (" + precision + ")");
+        mNumFloatSweeps = 0;
+        mNumDoubleSweeps = 0;
+
+        if(precision == Precision.DOUBLE){
+            mUtilities = initialUtilities == null ? new double[mStateSpace.getNumStates()] : initialUtilities.clone();
+            mFinalDelta = iterateDouble(mUtilities, null, epsilon);
+        }
+        else{
+            float[] floatUtilities = new float[mStateSpace.getNumStates()];
+            if(initialUtilities != null){
+                for(int s = 0; s < floatUtilities.length; ++s){
+                    floatUtilities[s] = (float) initialUtilities[s];
+                }
+            }
+            mFinalDelta = iterateFloat(floatUtilities, null, epsilon);
+            mUtilities = toDouble(floatUtilities);
+
+            /**
+             * Refine the single precision solution in double precision.
+             */
+            if(precision == Precision.MIXED && mFinalDelta >= epsilon){
+                mFinalDelta = iterateDouble(mUtilities, null, epsilon);
+            }
+        }
+
+        mPolicy = new int[mStateSpace.getNumStates()];
+        improvePolicy(mUtilities, mPolicy);
+        publishSolution();
+
+        mMetrics.endSolve(mNumFloatSweeps + mNumDoubleSweeps);
+        return mNumFloatSweeps + mNumDoubleSweeps;
+    }
+
+    /**
+     * Policy Iteration with utility values stored in the given precision.
+     * Returns the total number of Policy Evaluation sweeps.
+     * @param precision
+     * @param epsilon
+     * @return
+     */
+    public int policyIteration(Precision precision, double epsilon){
+        mMetrics.beginSolve("Policy Iteration (" + precision + ")");
+        mNumFloatSweeps = 0;
+        mNumDoubleSweeps = 0;
+
+        int[] policy = mStateSpace.getInitialPolicy();
+        int[] newPolicy = new int[policy.length];
+
+        if(precision == Precision.DOUBLE){
+            mUtilities = new double[mStateSpace.getNumStates()];
+        }
+        else{
+            float[] floatUtilities = new float[mStateSpace.getNumStates()];
+            int lastNumChanges = Integer.MAX_VALUE;
+            while(true){
+                mFinalDelta = iterateFloat(floatUtilities, policy, epsilon);
+                improvePolicy(toDouble(floatUtilities), newPolicy);
+
+                int numChanges = countDifferences(policy, newPolicy);
+                System.arraycopy(newPolicy, 0, policy, 0, policy.length);
+
+                /**
+                 * Rounding error in single precision can make near-tied actions flip back and forth,
+                 * so also stop once the evaluation has stalled and the policy stops getting closer.
+                 */
+                if(numChanges == 0 || (mFinalDelta >= epsilon && numChanges >= lastNumChanges)){
+                    break;
+                }
+                lastNumChanges = numChanges;
+            }
+            mUtilities = toDouble(floatUtilities);
+
+            if(precision == Precision.FLOAT){
+                mPolicy = policy;
+                publishSolution();
+                mMetrics.endSolve(mNumFloatSweeps);
+                return mNumFloatSweeps;
+            }
+        }
+
+        /**
+         * Policy Iteration in double precision. In MIXED mode this starts from the policy
+         * and utility values found in single precision.
+         */
+        while(true){
+            mFinalDelta = iterateDouble(mUtilities, policy, epsilon);
+            improvePolicy(mUtilities, newPolicy);
+
+            boolean policyStable = Arrays.equals(policy, newPolicy);
+            System.arraycopy(newPolicy, 0, policy, 0, policy.length);
+            if(policyStable){
+                break;
+            }
+        }
+        mPolicy = policy;
+        publishSolution();
+
+        mMetrics.endSolve(mNumFloatSweeps + mNumDoubleSweeps);
+        return mNumFloatSweeps + mNumDoubleSweeps;
+    }
+
+    /**
+     * Repeatedly sweep the double precision utility values until delta drops below epsilon.
+     * If a policy is given, the sweeps evaluate that policy, otherwise they apply the Bellman
+     * optimality update. Returns the delta of the last sweep.
+     * @param utilities
+     * @param policy
+     * @param epsilon
+     * @return
+     */
+    private double iterateDouble(double[] utilities, int[] policy, double epsilon){
+        while(true){
+            mNumDoubleSweeps++;
+            double delta = sweep(utilities, policy);
+            if(delta < epsilon){
+                return delta;
+            }
+        }
+    }
+
+    /**
+     * Repeatedly sweep the single precision utility values until delta drops below epsilon,
+     * or down to the float rounding error of the utility values. Returns the delta of the last sweep.
+     * @param utilities
+     * @param policy
+     * @param epsilon
+     * @return
+     */
+    private double iterateFloat(float[] utilities, int[] policy, double epsilon){
+        if(mFloatRewards == null){
+            mFloatRewards = new float[mStateSpace.getNumStates()];
+            double maxReward = 0.0;
+            for(int s = 0; s < mFloatRewards.length; ++s){
+                mFloatRewards[s] = (float) mStateSpace.getReward(s);
+                if(!Double.isNaN(mFloatRewards[s])){
+                    maxReward = Math.max(maxReward, Math.abs(mFloatRewards[s]));
+                }
+            }
+            mMaxFloatRoundingError = FLOAT_ROUNDING_ULPS * Math.ulp((float) (maxReward / (1 - mDiscountFactor)));
+        }
+        double bestDelta = Double.POSITIVE_INFINITY;
+        int numStalledSweeps = 0;
+
+        while(true){
+            mNumFloatSweeps++;
+            double delta = sweep(utilities, policy);
+            if(delta < epsilon){
+                return delta;
+            }
+
+            /**
+             * The largest utility value is only looked up once delta could be rounding error at all.
+             */
+            if(delta <= mMaxFloatRoundingError && delta <= FLOAT_ROUNDING_ULPS * Math.ulp(getMaxAbs(utilities))){
+                return delta;
+            }
+
+            if(delta < bestDelta){
+                bestDelta = delta;
+                numStalledSweeps = 0;
+            }
+            else if(++numStalledSweeps >= FLOAT_STALL_SWEEPS){
+                return delta;
+            }
+        }
+    }
+
+    private double sweep(double[] utilities, int[] policy){
+        mMetrics.beginSweep();
+        double delta = mStateSpace.sweep(utilities, policy, mDiscountFactor);
+        mMetrics.endSweep(mStateSpace.getNumOpenStates(), delta);
+
+        if(mPublisher != null && mPublisher.isDue()){
+            mPublisher.publish(utilities, policy, mNumFloatSweeps + mNumDoubleSweeps, delta, false);
+        }
+        return delta;
+    }
+
+    private double sweep(float[] utilities, int[] policy){
+        mMetrics.beginSweep();
+        double delta = mStateSpace.sweep(utilities, mFloatRewards, policy, (float) mDiscountFactor);
+        mMetrics.endSweep(mStateSpace.getNumOpenStates(), delta);
+
+        if(mPublisher != null && mPublisher.isDue()){
+            mPublisher.publish(utilities, policy, mNumFloatSweeps + mNumDoubleSweeps, delta, false);
+        }
+        return delta;
+    }
+
+    /**
+     * Publish the final solution, if a publisher is set.
+     */
+    private void publishSolution(){
+        if(mPublisher != null){
+            mPublisher.publish(mUtilities, mPolicy, mNumFloatSweeps + mNumDoubleSweeps, mFinalDelta, true);
+        }
+    }
+
+    private void improvePolicy(double[] utilities, int[] policy){
+        mMetrics.beginImprovement();
+        mStateSpace.improvePolicy(utilities, policy);
+        mMetrics.endImprovement(mStateSpace.getNumOpenStates());
+    }
+
+    /**
+     * Return the number of states in which two policies choose different actions.
+     * @param policy
+     * @param otherPolicy
+     * @return
+     */
+    static int countDifferences(int[] policy, int[] otherPolicy){
+        int numDifferences = 0;
+        for(int k = 0; k < policy.length; ++k){
+            if(policy[k] != otherPolicy[k]){
+                numDifferences++;
+            }
+        }
+        return numDifferences;
+    }
+
+    private static float getMaxAbs(float[] values){
+        float maxAbs = 0.0f;
+        for(float value : values){
+            if(Math.abs(value) > maxAbs){
+                maxAbs = Math.abs(value);
+            }
+        }
+        return maxAbs;
+    }
+
+    private static double[] toDouble(float[] values){
+        double[] doubleValues = new double[values.length];
+        for(int k = 0; k < values.length; ++k){
+            doubleValues[k] = values[k];
+        }
+        return doubleValues;
+    }
+
+    public double[] getUtilities() {
+        return mUtilities;
+    }
+
+    public int[] getPolicy() {
+        return mPolicy;
+    }
+
+    public int getNumFloatSweeps() {
+        return mNumFloatSweeps;
+    }
+
+    public int getNumDoubleSweeps() {
+        return mNumDoubleSweeps;
+    }
+
+    public double getFinalDelta() {
+        return mFinalDelta;
+    }
+
+    public SolverMetrics.Snapshot getMetrics() {
+        return mMetrics.getSnapshot();
+    }
+}
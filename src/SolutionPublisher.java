@@ -0,0 +1,232 @@
+import java.util.concurrent.atomic.AtomicReference;
+
+public class SolutionPublisher {
+
+    /**
+     * This class hands intermediate solutions from a solver thread to a viewer thread without locks and
+     * without ever making the solver wait. There are two frame buffers: the solver fills one while the
+     * other is waiting for, or being drawn by, the viewer. The solver only copies a frame when a new one is
+     * due (at most maxFramesPerSecond), and skips it if the viewer still holds the other buffer. A frame
+     * that the viewer has not taken by the time the next one is published is dropped and its buffer reused.
+     * Only one thread may publish and only one thread may take frames.
+     */
+
+    private int mNumStates;
+
+    private long mFrameIntervalNanos;
+    private long mNextFrameNanos;
+
+    /**
+     * Buffer owned by the solver thread, or null if the viewer holds both.
+     */
+    private Frame mBackFrame;
+
+    /**
+     * Latest frame waiting for the viewer, and the buffer released by the viewer.
+     */
+    private final AtomicReference<Frame> mPendingFrame = new AtomicReference<>();
+    private final AtomicReference<Frame> mFreeFrame = new AtomicReference<>();
+
+    /**
+     * Statistics, written by the solver thread only.
+     */
+    private volatile int mNumPublished;
+    private volatile int mNumSkipped;
+
+    /**
+     * Constructor for the SolutionPublisher object.
+     * @param numStates
+     * @param maxFramesPerSecond
+     */
+    public SolutionPublisher(int numStates, double maxFramesPerSecond){
+        mNumStates = numStates;
+        mFrameIntervalNanos = (long) (1e9 / maxFramesPerSecond);
+        mNextFrameNanos = System.nanoTime();
+        mBackFrame = new Frame(numStates);
+        mFreeFrame.set(new Frame(numStates));
+    }
+
+    /**
+     * Whether a new frame is due. Costs a single clock read.
+     * @return
+     */
+    public boolean isDue(){
+        return System.nanoTime() >= mNextFrameNanos;
+    }
+
+    /**
+     * Publish the utility values (and policy, if not null) after the given sweep, if a frame is due and a
+     * buffer is free. If force is set, the frame is always published, in a new buffer if need be.
+     * Returns whether the frame was published.
+     * @param utilities
+     * @param policy
+     * @param sweep
+     * @param delta
+     * @param force
+     * @return
+     */
+    public boolean publish(double[] utilities, int[] policy, int sweep, double delta, boolean force){
+        Frame frame = getBackFrame(force);
+        if(frame == null){
+            return false;
+        }
+
+        double minUtility = Double.POSITIVE_INFINITY;
+        double maxUtility = Double.NEGATIVE_INFINITY;
+        for(int s = 0; s < mNumStates; ++s){
+            double utility = utilities[s];
+            frame.mUtilities[s] = utility;
+            minUtility = Math.min(minUtility, utility);
+            maxUtility = Math.max(maxUtility, utility);
+        }
+        return handOff(frame, policy, sweep, delta, minUtility, maxUtility);
+    }
+
+    /**
+     * Single precision counterpart of publish(double[], int[], int, double, boolean).
+     */
+    public boolean publish(float[] utilities, int[] policy, int sweep, double delta, boolean force){
+        Frame frame = getBackFrame(force);
+        if(frame == null){
+            return false;
+        }
+
+        double minUtility = Double.POSITIVE_INFINITY;
+        double maxUtility = Double.NEGATIVE_INFINITY;
+        for(int s = 0; s < mNumStates; ++s){
+            double utility = utilities[s];
+            frame.mUtilities[s] = utility;
+            minUtility = Math.min(minUtility, utility);
+            maxUtility = Math.max(maxUtility, utility);
+        }
+        return handOff(frame, policy, sweep, delta, minUtility, maxUtility);
+    }
+
+    /**
+     * Return the buffer to fill, or null if no frame should be published now.
+     */
+    private Frame getBackFrame(boolean force){
+        if(!force && !isDue()){
+            return null;
+        }
+        if(mBackFrame == null){
+            mBackFrame = mFreeFrame.getAndSet(null);
+        }
+        if(mBackFrame == null){
+            if(!force){
+                /**
+                 * The viewer holds both buffers: skip this frame rather than wait.
+                 */
+                mNumSkipped++;
+                return null;
+            }
+            mBackFrame = new Frame(mNumStates);
+        }
+        return mBackFrame;
+    }
+
+    private boolean handOff(Frame frame, int[] policy, int sweep, double delta, double minUtility, double maxUtility){
+        frame.mHasPolicy = policy != null;
+        if(policy != null){
+            System.arraycopy(policy, 0, frame.mPolicy, 0, mNumStates);
+        }
+        frame.mSweep = sweep;
+        frame.mDelta = delta;
+        frame.mMinUtility = minUtility;
+        frame.mMaxUtility = maxUtility;
+
+        /**
+         * Make the frame visible to the viewer. If the previous frame was never taken, reuse its buffer.
+         */
+        mBackFrame = mPendingFrame.getAndSet(frame);
+        mNumPublished++;
+        mNextFrameNanos = System.nanoTime() + mFrameIntervalNanos;
+        return true;
+    }
+
+    /**
+     * Take the latest published frame, or null if there is none since the last call.
+     * The frame must be given back with release() once drawn.
+     * @return
+     */
+    public Frame take(){
+        return mPendingFrame.getAndSet(null);
+    }
+
+    /**
+     * Give a frame returned by take() back to the solver.
+     * @param frame
+     */
+    public void release(Frame frame){
+        mFreeFrame.set(frame);
+    }
+
+    public int getNumPublished() {
+        return mNumPublished;
+    }
+
+    public int getNumSkipped() {
+        return mNumSkipped;
+    }
+
+    /**
+     * Utility values (and optionally the policy) of all states after a sweep. Only valid between take()
+     * and release().
+     */
+    public static class Frame {
+
+        private final double[] mUtilities;
+        private final int[] mPolicy;
+        private boolean mHasPolicy;
+        private int mSweep;
+        private double mDelta;
+        private double mMinUtility;
+        private double mMaxUtility;
+
+        private Frame(int numStates){
+            mUtilities = new double[numStates];
+            mPolicy = new int[numStates];
+        }
+
+        public double getUtility(int s) {
+            return mUtilities[s];
+        }
+
+        /**
+         * Return the utility values of all states. Not to be modified.
+         * @return
+         */
+        public double[] getUtilities() {
+            return mUtilities;
+        }
+
+        /**
+         * Return the action of state s, or -1 if the frame has no policy.
+         * @param s
+         * @return
+         */
+        public int getAction(int s) {
+            return mHasPolicy ? mPolicy[s] : -1;
+        }
+
+        public boolean hasPolicy() {
+            return mHasPolicy;
+        }
+
+        public int getSweep() {
+            return mSweep;
+        }
+
+        public double getDelta() {
+            return mDelta;
+        }
+
+        public double getMinUtility() {
+            return mMinUtility;
+        }
+
+        public double getMaxUtility() {
+            return mMaxUtility;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+import java.util.Arrays;
+
+public class SolutionSnapshot {
+
+    /**
+     * This class is an immutable copy of the utility values and the policy of a GridWorld after a solve.
+     * A GridWorld publishes a new snapshot at the end of every solve, with a version number larger than
+     * that of any earlier snapshot of the same GridWorld, and swaps it in with a single atomic reference
+     * write. Readers on other threads can therefore hold on to a snapshot and read it without locks while
+     * the next solve runs, and never see a partly updated solution.
+     */
+
+    private final long mVersion;
+
+    private final String mSolverName;
+
+    private final int mNumRows;
+    private final int mNumCols;
+
+    /**
+     * Utility values and actions (indices into UP, RIGHT, DOWN, LEFT) of the cells in row-major order.
+     * Walled cells have a utility value of NaN and an action of -1.
+     */
+    private final double[] mUtilities;
+    private final int[] mPolicy;
+
+    /**
+     * Constructor for the SolutionSnapshot object. Takes ownership of the arrays, which must not be
+     * modified afterwards.
+     * @param version
+     * @param solverName
+     * @param numRows
+     * @param numCols
+     * @param utilities
+     * @param policy
+     */
+    SolutionSnapshot(long version, String solverName, int numRows, int numCols, double[] utilities, int[] policy){
+        mVersion = version;
+        mSolverName = solverName;
+        mNumRows = numRows;
+        mNumCols = numCols;
+        mUtilities = utilities;
+        mPolicy = policy;
+    }
+
+    public long getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Name of the solve that produced the snapshot, e.g. "Value Iteration".
+     * @return
+     */
+    public String getSolverName() {
+        return mSolverName;
+    }
+
+    public int getNumRows() {
+        return mNumRows;
+    }
+
+    public int getNumCols() {
+        return mNumCols;
+    }
+
+    /**
+     * Utility value of the cell, or NaN for a walled cell.
+     * @param rowIndex
+     * @param colIndex
+     * @return
+     */
+    public double getUtility(int rowIndex, int colIndex) {
+        return mUtilities[rowIndex * mNumCols + colIndex];
+    }
+
+    /**
+     * Action of the cell (0 = UP, 1 = RIGHT, 2 = DOWN, 3 = LEFT), or -1 for a walled cell.
+     * @param rowIndex
+     * @param colIndex
+     * @return
+     */
+    public int getAction(int rowIndex, int colIndex) {
+        return mPolicy[rowIndex * mNumCols + colIndex];
+    }
+
+    /**
+     * Return a copy of the utility values of all cells in row-major order.
+     * @return
+     */
+    public double[] toUtilityArray() {
+        return mUtilities.clone();
+    }
+
+    /**
+     * Return a copy of the actions of all cells in row-major order.
+     * @return
+     */
+    public int[] toPolicyArray() {
+        return mPolicy.clone();
+    }
+
+    /**
+     * Whether the other snapshot chooses the same action in every cell.
+     * @param other
+     * @return
+     */
+    public boolean hasSamePolicy(SolutionSnapshot other) {
+        return Arrays.equals(mPolicy, other.mPolicy);
+    }
+
+    @Override
+    public String toString() {
+        return mSolverName + " (version " + mVersion + ", " + mNumRows + "x" + mNumCols + ")";
+    }
+}
@@ -0,0 +1,36 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("gridworld.Solve")
+@Label("Solve")
+@Category("GridWorld")
+@Description("A complete solve of a GridWorld")
+public class SolveEvent extends jdk.jfr.Event {
+
+    /**
+     * JFR event emitted for every solve (see SolverMetrics).
+     */
+
+    @Label("Solver")
+    String solver;
+
+    @Label("Iterations")
+    int iterations;
+
+    @Label("Sweeps")
+    int sweeps;
+
+    @Label("Backups")
+    long backups;
+
+    @Label("Sweep Time (ns)")
+    long sweepNanos;
+
+    @Label("Improvement Time (ns)")
+    long improvementNanos;
+
+    @Label("Final Delta")
+    double finalDelta;
+}
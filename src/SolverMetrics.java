@@ -0,0 +1,357 @@
+import jdk.jfr.EventType;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+public class SolverMetrics {
+
+    /**
+     * This class collects performance metrics of a solve: the wall time spent sweeping (Policy Evaluation
+     * or Value Iteration) and in Policy Improvement, the number of Bellman backups, the delta of every
+     * sweep and the memory allocated by the solving thread. Timers are read once per sweep or phase,
+     * never per state, so the overhead is negligible. Every sweep and every solve is also emitted as a
+     * JFR event (see SweepEvent and SolveEvent) while a recording is running; otherwise no event is
+     * created. The allocation counter is only read if allocation tracking is switched on, or for the
+     * sweep events. At most MAX_DELTAS deltas are kept: once they are full, every other one is dropped
+     * and only every second sweep is recorded from then on, so long solves keep an evenly spaced
+     * trajectory. An immutable view of the metrics can be taken at any time via getSnapshot().
+     */
+
+    /**
+     * Per-thread allocation counter, if the JVM supports it.
+     */
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = getThreadMXBean();
+
+    private static final EventType SWEEP_EVENT_TYPE = EventType.getEventType(SweepEvent.class);
+    private static final EventType SOLVE_EVENT_TYPE = EventType.getEventType(SolveEvent.class);
+
+    /**
+     * Largest number of deltas kept for the trajectory of a solve. Must be even.
+     */
+    private static final int MAX_DELTAS = 4096;
+
+    private String mSolverName;
+
+    private int mNumSweeps;
+    private long mNumBackups;
+    private long mSweepNanos;
+    private long mImprovementNanos;
+    private long mSolveNanos;
+    private long mSweepAllocatedBytes;
+    private boolean mTrackAllocations;
+
+    /**
+     * Delta of every mDeltaStride-th sweep, in order, starting with the first sweep, and the delta of
+     * the last sweep.
+     */
+    private double[] mDeltas;
+    private int mNumDeltas;
+    private int mDeltaStride;
+    private double mFinalDelta;
+
+    /**
+     * Start of the current phase (sweep or improvement) and of the current solve.
+     */
+    private long mPhaseStartNanos;
+    private long mPhaseStartBytes;
+    private long mSolveStartNanos;
+
+    private SweepEvent mSweepEvent;
+    private SolveEvent mSolveEvent;
+
+    /**
+     * Constructor for the SolverMetrics object.
+     */
+    public SolverMetrics(){
+        mSolverName = "none";
+        mDeltas = new double[0];
+        mDeltaStride = 1;
+        mFinalDelta = Double.NaN;
+    }
+
+    /**
+     * Measure the memory allocated by the solving thread during sweeps, which reads the thread's
+     * allocation counter twice per sweep. Off by default.
+     * @param trackAllocations
+     */
+    public void setTrackAllocations(boolean trackAllocations){
+        mTrackAllocations = trackAllocations;
+    }
+
+    /**
+     * Reset all metrics at the start of a solve.
+     * @param solverName
+     */
+    public void beginSolve(String solverName){
+        mSolverName = solverName;
+        mNumSweeps = 0;
+        mNumBackups = 0;
+        mSweepNanos = 0;
+        mImprovementNanos = 0;
+        mSolveNanos = 0;
+        mSweepAllocatedBytes = 0;
+        mDeltas = new double[0];
+        mNumDeltas = 0;
+        mDeltaStride = 1;
+        mFinalDelta = Double.NaN;
+
+        mSolveEvent = null;
+        if(SOLVE_EVENT_TYPE.isEnabled()){
+            mSolveEvent = new SolveEvent();
+            mSolveEvent.begin();
+        }
+        mSolveStartNanos = System.nanoTime();
+    }
+
+    public void beginSweep(){
+        if(SWEEP_EVENT_TYPE.isEnabled()){
+            mSweepEvent = new SweepEvent();
+            mSweepEvent.begin();
+        }
+        if(mTrackAllocations || mSweepEvent != null){
+            mPhaseStartBytes = getAllocatedBytes();
+        }
+        mPhaseStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Record the end of a sweep that performed the given number of Bellman backups.
+     * @param numBackups
+     * @param delta
+     */
+    public void endSweep(long numBackups, double delta){
+        mSweepNanos += System.nanoTime() - mPhaseStartNanos;
+        long allocatedBytes = 0;
+        if(mTrackAllocations || mSweepEvent != null){
+            allocatedBytes = getAllocatedBytes() - mPhaseStartBytes;
+        }
+        if(mTrackAllocations){
+            mSweepAllocatedBytes += allocatedBytes;
+        }
+
+        recordDelta(mNumSweeps++, delta);
+        mNumBackups += numBackups;
+
+        if(mSweepEvent == null){
+            return;
+        }
+        mSweepEvent.end();
+        if(mSweepEvent.shouldCommit()){
+            mSweepEvent.solver = mSolverName;
+            mSweepEvent.sweep = mNumSweeps;
+            mSweepEvent.delta = delta;
+            mSweepEvent.backups = numBackups;
+            mSweepEvent.allocatedBytes = allocatedBytes;
+            mSweepEvent.commit();
+        }
+        mSweepEvent = null;
+    }
+
+    /**
+     * Keep the delta of the given sweep (counted from 0) if it falls on the current stride, halving the
+     * kept deltas when they are full.
+     */
+    private void recordDelta(int sweep, double delta){
+        mFinalDelta = delta;
+        if(sweep % mDeltaStride != 0){
+            return;
+        }
+        if(mNumDeltas == MAX_DELTAS){
+            for(int k = 0; k < MAX_DELTAS / 2; ++k){
+                mDeltas[k] = mDeltas[2 * k];
+            }
+            mNumDeltas = MAX_DELTAS / 2;
+            mDeltaStride *= 2;
+            if(sweep % mDeltaStride != 0){
+                return;
+            }
+        }
+        if(mNumDeltas == mDeltas.length){
+            mDeltas = Arrays.copyOf(mDeltas, Math.min(MAX_DELTAS, Math.max(64, 2 * mNumDeltas)));
+        }
+        mDeltas[mNumDeltas++] = delta;
+    }
+
+    public void beginImprovement(){
+        mPhaseStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Record the end of a Policy Improvement step that performed the given number of Bellman backups.
+     * @param numBackups
+     */
+    public void endImprovement(long numBackups){
+        mImprovementNanos += System.nanoTime() - mPhaseStartNanos;
+        mNumBackups += numBackups;
+    }
+
+    /**
+     * Record the end of a solve, which reports the given number of iterations to its caller.
+     * @param numIterations
+     */
+    public void endSolve(int numIterations){
+        mSolveNanos = System.nanoTime() - mSolveStartNanos;
+
+        if(mSolveEvent == null){
+            return;
+        }
+        mSolveEvent.end();
+        if(mSolveEvent.shouldCommit()){
+            mSolveEvent.solver = mSolverName;
+            mSolveEvent.iterations = numIterations;
+            mSolveEvent.sweeps = mNumSweeps;
+            mSolveEvent.backups = mNumBackups;
+            mSolveEvent.sweepNanos = mSweepNanos;
+            mSolveEvent.improvementNanos = mImprovementNanos;
+            mSolveEvent.finalDelta = mFinalDelta;
+            mSolveEvent.commit();
+        }
+        mSolveEvent = null;
+    }
+
+    /**
+     * Return an immutable copy of the current metrics.
+     * @return
+     */
+    public Snapshot getSnapshot(){
+        return new Snapshot(this);
+    }
+
+    private static long getAllocatedBytes(){
+        return THREAD_MX_BEAN == null ? 0 : THREAD_MX_BEAN.getCurrentThreadAllocatedBytes();
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadMXBean(){
+        try{
+            java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+            if(threadMXBean instanceof com.sun.management.ThreadMXBean){
+                com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadMXBean;
+                if(allocationBean.isThreadAllocatedMemorySupported() && allocationBean.isThreadAllocatedMemoryEnabled()){
+                    return allocationBean;
+                }
+            }
+        } catch (LinkageError e){
+            /**
+             * The jdk.management module is not available, so allocation is not tracked.
+             */
+        }
+        return null;
+    }
+
+    /**
+     * Immutable view of the metrics of a solve.
+     */
+    public static class Snapshot {
+
+        private final String mSolverName;
+        private final int mNumSweeps;
+        private final long mNumBackups;
+        private final long mSweepNanos;
+        private final long mImprovementNanos;
+        private final long mSolveNanos;
+        private final long mSweepAllocatedBytes;
+        private final boolean mAllocationsTracked;
+        private final double[] mDeltas;
+        private final int mDeltaStride;
+        private final double mFinalDelta;
+
+        private Snapshot(SolverMetrics metrics){
+            mSolverName = metrics.mSolverName;
+            mNumSweeps = metrics.mNumSweeps;
+            mNumBackups = metrics.mNumBackups;
+            mSweepNanos = metrics.mSweepNanos;
+            mImprovementNanos = metrics.mImprovementNanos;
+            mSolveNanos = metrics.mSolveNanos;
+            mSweepAllocatedBytes = metrics.mSweepAllocatedBytes;
+            mAllocationsTracked = metrics.mTrackAllocations;
+            mDeltas = Arrays.copyOf(metrics.mDeltas, metrics.mNumDeltas);
+            mDeltaStride = metrics.mDeltaStride;
+            mFinalDelta = metrics.mFinalDelta;
+        }
+
+        public String getSolverName() {
+            return mSolverName;
+        }
+
+        public int getNumSweeps() {
+            return mNumSweeps;
+        }
+
+        public long getNumBackups() {
+            return mNumBackups;
+        }
+
+        /**
+         * Wall time spent in Policy Evaluation or Value Iteration sweeps.
+         * @return
+         */
+        public long getSweepNanos() {
+            return mSweepNanos;
+        }
+
+        /**
+         * Wall time spent in Policy Improvement.
+         * @return
+         */
+        public long getImprovementNanos() {
+            return mImprovementNanos;
+        }
+
+        /**
+         * Wall time of the whole solve.
+         * @return
+         */
+        public long getSolveNanos() {
+            return mSolveNanos;
+        }
+
+        public double getBackupsPerSecond() {
+            long nanos = mSweepNanos + mImprovementNanos;
+            return nanos == 0 ? 0.0 : mNumBackups * 1e9 / nanos;
+        }
+
+        /**
+         * Bytes allocated by the solving thread per sweep, or NaN if allocations were not tracked.
+         * @return
+         */
+        public double getAllocatedBytesPerSweep() {
+            if(!mAllocationsTracked){
+                return Double.NaN;
+            }
+            return mNumSweeps == 0 ? 0.0 : (double) mSweepAllocatedBytes / mNumSweeps;
+        }
+
+        /**
+         * The delta of every getDeltaStride()-th sweep, in order, starting with the first sweep.
+         * @return
+         */
+        public double[] getDeltaTrajectory() {
+            return mDeltas.clone();
+        }
+
+        /**
+         * Number of sweeps between two deltas of the trajectory.
+         * @return
+         */
+        public int getDeltaStride() {
+            return mDeltaStride;
+        }
+
+        /**
+         * Delta of the last sweep, or NaN if there was none.
+         * @return
+         */
+        public double getFinalDelta() {
+            return mFinalDelta;
+        }
+
+        @Override
+        public String toString() {
+            return mSolverName + ": sweeps = " + mNumSweeps + ", backups = " + mNumBackups +
+                    ", sweep time = " + mSweepNanos / 1000000 + " ms, improvement time = " + mImprovementNanos / 1000000 +
+                    " ms, backups/s = " + (long) getBackupsPerSecond() +
+                    (mAllocationsTracked ? ", allocated bytes/sweep = " + (long) getAllocatedBytesPerSweep() : "") +
+                    ", final delta = " + mFinalDelta;
+        }
+    }
+}
@@ -68,6 +68,15 @@ public class State {
         return mRowIndex == otherState.getRowIndex() && mColIndex == otherState.getColIndex();
     }
 
+    /**
+     * Consistent with equals, so that the iteration order of the maps keyed by states, and with it the
+     * order of the in-place sweeps of GridWorld, is the same for every GridWorld of the same size.
+     */
+    @Override
+    public int hashCode() {
+        return mRowIndex * 31 + mColIndex;
+    }
+
     @Override
     public String toString() {
         if(mIsWall){
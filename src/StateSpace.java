@@ -0,0 +1,64 @@
+public interface StateSpace {
+
+    /**
+     * The operations on a state space needed by the solvers that only sweep over all the states
+     * (PrecisionSolver, AndersonSolver, ContinuationSolver). States are numbered 0 .. numStates - 1, and
+     * actions are numbered by the implementation. CompactStateSpace is the two-dimensional world, with
+     * walled cells left out and the moves of every state precomputed, and actions UP, RIGHT, DOWN, LEFT;
+     * GridSpace is the general N-dimensional world, where every cell is a state and the actions are
+     * numbered by axis.
+     */
+
+    /**
+     * Expected utilities closer than this are considered equal when choosing the best action.
+     */
+    double ACTION_TIE_TOLERANCE = 1e-10;
+
+    int getNumStates();
+
+    /**
+     * Number of states that are not walled cells, i.e. the number of Bellman backups in a sweep.
+     * @return
+     */
+    int getNumOpenStates();
+
+    /**
+     * Reward of state s, or NaN if the state is a walled cell that is never updated.
+     * @param s
+     * @return
+     */
+    double getReward(int s);
+
+    /**
+     * One in-place sweep over all states. If a policy is given, the sweep evaluates that policy,
+     * otherwise it applies the Bellman optimality update. Returns the largest change in utility value.
+     * @param utilities
+     * @param policy
+     * @param discountFactor
+     * @return
+     */
+    double sweep(double[] utilities, int[] policy, double discountFactor);
+
+    /**
+     * Single precision counterpart of sweep(double[], int[], double).
+     * @param utilities
+     * @param rewards
+     * @param policy
+     * @param discountFactor
+     * @return
+     */
+    double sweep(float[] utilities, float[] rewards, int[] policy, float discountFactor);
+
+    /**
+     * Store the best action for every state, given the utility values, into policy.
+     * @param utilities
+     * @param policy
+     */
+    void improvePolicy(double[] utilities, int[] policy);
+
+    /**
+     * Initial policy for Policy Iteration.
+     * @return
+     */
+    int[] getInitialPolicy();
+}
@@ -0,0 +1,30 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("gridworld.Sweep")
+@Label("Sweep")
+@Category("GridWorld")
+@Description("One sweep of Policy Evaluation or Value Iteration over all the states")
+public class SweepEvent extends jdk.jfr.Event {
+
+    /**
+     * JFR event emitted for every sweep of a solver (see SolverMetrics).
+     */
+
+    @Label("Solver")
+    String solver;
+
+    @Label("Sweep")
+    int sweep;
+
+    @Label("Delta")
+    double delta;
+
+    @Label("Backups")
+    long backups;
+
+    @Label("Allocated Bytes")
+    long allocatedBytes;
+}
@@ -0,0 +1,358 @@
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+public class TileRenderer {
+
+    /**
+     * This class renders a solved GridWorld offscreen, without a display: a heatmap of the utility values,
+     * with the policy arrows from images/ drawn on top wherever the cells are large enough to show them.
+     * Images are split into square tiles which are rendered in parallel, and can be written as a PNG tile
+     * pyramid for zoomable viewers, laid out as zoom/x/y.png. Zoom level 0 shows the whole world in a single
+     * tile, and every further level doubles the resolution, up to cellSize pixels per cell at the last level.
+     * Pixels are written straight into the raster of each tile from a precomputed colour per cell, and the
+     * arrow icons are read once and cached pre-scaled for every icon size in use.
+     */
+
+    public static final int TILE_SIZE = 256;
+
+    /**
+     * Compression quality of the PNG tiles, from 0 (smallest files) to 1 (fastest).
+     */
+    private static final float PNG_COMPRESSION_QUALITY = 0.8f;
+
+    /**
+     * Cells smaller than this (in pixels) are drawn without borders, and cells smaller than
+     * MIN_ICON_CELL_SIZE without policy arrows.
+     */
+    private static final int MIN_BORDER_CELL_SIZE = 8;
+    static final int MIN_ICON_CELL_SIZE = 16;
+
+    /**
+     * Colours of the lowest and highest utility values (matching the -1 and +1 rewards in GridUIUtils),
+     * of the midpoint between them, and of walls and cell borders.
+     */
+    private static final Color LOW_COLOR = new Color(255, 165, 0);
+    private static final Color MID_COLOR = Color.WHITE;
+    private static final Color HIGH_COLOR = Color.GREEN;
+    static final int WALL_RGB = Color.GRAY.getRGB();
+    private static final int BORDER_RGB = Color.BLACK.getRGB();
+
+    private static final String[] ICON_FILES = {"images/up.png", "images/right.png", "images/down.png", "images/left.png"};
+
+    /**
+     * Icons as read from images/, in the order UP, RIGHT, DOWN, LEFT, read on first use.
+     */
+    private static BufferedImage[] sIcons;
+
+    /**
+     * Icons scaled to every size in use, keyed by size in pixels.
+     */
+    private static final ConcurrentHashMap<Integer, BufferedImage[]> SCALED_ICONS = new ConcurrentHashMap<>();
+
+    private int mNumRows;
+    private int mNumCols;
+    private int mCellSize;
+
+    /**
+     * Heatmap colour (ARGB) and action (-1 for walls) of every cell, in row-major order.
+     */
+    private int[] mCellColors;
+    private int[] mCellActions;
+
+    /**
+     * Zoom level at which every cell is mCellSize pixels wide.
+     */
+    private int mMaxZoom;
+
+    /**
+     * Constructor for the TileRenderer object. Takes the solution as utility values and actions by state
+     * index, and the size of a cell in pixels at the highest zoom level.
+     * @param stateSpace
+     * @param utilities
+     * @param policy
+     * @param cellSize
+     */
+    public TileRenderer(CompactStateSpace stateSpace, double[] utilities, int[] policy, int cellSize){
+        if(cellSize < 1){
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        mNumRows = stateSpace.getNumRows();
+        mNumCols = stateSpace.getNumCols();
+        mCellSize = cellSize;
+
+        double minUtility = Double.POSITIVE_INFINITY;
+        double maxUtility = Double.NEGATIVE_INFINITY;
+        for(int s = 0; s < stateSpace.getNumStates(); ++s){
+            minUtility = Math.min(minUtility, utilities[s]);
+            maxUtility = Math.max(maxUtility, utilities[s]);
+        }
+
+        mCellColors = new int[mNumRows * mNumCols];
+        Arrays.fill(mCellColors, WALL_RGB);
+        double range = maxUtility - minUtility;
+        for(int s = 0; s < stateSpace.getNumStates(); ++s){
+            double fraction = range > 0 ? (utilities[s] - minUtility) / range : 0.5;
+            mCellColors[stateSpace.getCell(s)] = getHeatmapRGB(fraction);
+        }
+        mCellActions = stateSpace.toGridArray(policy);
+
+        long maxSide = (long) Math.max(mNumRows, mNumCols) * cellSize;
+        mMaxZoom = 0;
+        while(((long) TILE_SIZE << mMaxZoom) < maxSide){
+            mMaxZoom++;
+        }
+    }
+
+    /**
+     * Write the tile pyramid for all zoom levels into directory as zoom/x/y.png.
+     * The tiles of every level are rendered and encoded in parallel.
+     * @param directory
+     * @throws IOException
+     */
+    public void writeTilePyramid(File directory) throws IOException {
+        for(int zoom = 0; zoom <= mMaxZoom; ++zoom){
+            int numTilesX = getNumTilesX(zoom);
+            int numTilesY = getNumTilesY(zoom);
+            for(int x = 0; x < numTilesX; ++x){
+                File column = new File(directory, zoom + File.separator + x);
+                if(!column.isDirectory() && !column.mkdirs()){
+                    throw new IOException("Cannot create " + column);
+                }
+            }
+
+            int level = zoom;
+            try{
+                IntStream.range(0, numTilesX * numTilesY).parallel().forEach(tile -> {
+                    int x = tile / numTilesY;
+                    int y = tile % numTilesY;
+                    File file = new File(directory, level + File.separator + x + File.separator + y + ".png");
+                    try{
+                        writePng(renderTile(level, x, y), file);
+                    } catch (IOException e){
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e){
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Write an image as PNG, with fast rather than maximal compression.
+     * @param image
+     * @param file
+     * @throws IOException
+     */
+    public static void writePng(BufferedImage image, File file) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if(param.canWriteCompressed()){
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(PNG_COMPRESSION_QUALITY);
+        }
+        try(ImageOutputStream output = ImageIO.createImageOutputStream(file)){
+            if(output == null){
+                throw new IOException("Cannot write " + file);
+            }
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Render the whole world at the highest zoom level into a single image, tile by tile in parallel.
+     * @return
+     */
+    public BufferedImage renderImage(){
+        long width = (long) mNumCols * mCellSize;
+        long height = (long) mNumRows * mCellSize;
+        if(width * height > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("Image of " + width + "x" + height + " pixels is too large, write a tile pyramid instead");
+        }
+        BufferedImage image = new BufferedImage((int) width, (int) height, BufferedImage.TYPE_INT_ARGB);
+        int numTilesX = getNumTilesX(mMaxZoom);
+        int numTilesY = getNumTilesY(mMaxZoom);
+
+        IntStream.range(0, numTilesX * numTilesY).parallel().forEach(tile -> {
+            int x = tile / numTilesY;
+            int y = tile % numTilesY;
+            BufferedImage tileImage = renderTile(mMaxZoom, x, y);
+            int tileWidth = (int) Math.min(TILE_SIZE, width - (long) x * TILE_SIZE);
+            int tileHeight = (int) Math.min(TILE_SIZE, height - (long) y * TILE_SIZE);
+            int[] pixels = ((DataBufferInt) tileImage.getRaster().getDataBuffer()).getData();
+            image.setRGB(x * TILE_SIZE, y * TILE_SIZE, tileWidth, tileHeight, pixels, 0, TILE_SIZE);
+        });
+        return image;
+    }
+
+    /**
+     * Render one tile of the given zoom level. Pixels outside the world are transparent.
+     * @param zoom
+     * @param tileX
+     * @param tileY
+     * @return
+     */
+    public BufferedImage renderTile(int zoom, int tileX, int tileY){
+        BufferedImage tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) tile.getRaster().getDataBuffer()).getData();
+
+        /**
+         * A pixel at this zoom level covers 2^shift pixels at the highest zoom level.
+         */
+        int shift = mMaxZoom - zoom;
+        double cellPixels = (double) mCellSize / (1L << shift);
+        boolean drawBorders = cellPixels >= MIN_BORDER_CELL_SIZE;
+        long span = 1L << shift;
+
+        /**
+         * Column of the cell under every pixel column of the tile, or -1 outside the world, and whether the
+         * pixel column covers the left border of the cell. Likewise for rows.
+         */
+        int[] cols = new int[TILE_SIZE];
+        boolean[] colBorders = new boolean[TILE_SIZE];
+        int[] rows = new int[TILE_SIZE];
+        boolean[] rowBorders = new boolean[TILE_SIZE];
+        for(int k = 0; k < TILE_SIZE; ++k){
+            long x = ((long) tileX * TILE_SIZE + k) << shift;
+            long y = ((long) tileY * TILE_SIZE + k) << shift;
+            cols[k] = x / mCellSize < mNumCols ? (int) (x / mCellSize) : -1;
+            rows[k] = y / mCellSize < mNumRows ? (int) (y / mCellSize) : -1;
+            colBorders[k] = drawBorders && x % mCellSize < span;
+            rowBorders[k] = drawBorders && y % mCellSize < span;
+        }
+
+        for(int py = 0; py < TILE_SIZE; ++py){
+            int row = rows[py];
+            if(row < 0){
+                break;
+            }
+            int rowOffset = row * mNumCols;
+            for(int px = 0; px < TILE_SIZE; ++px){
+                int col = cols[px];
+                if(col < 0){
+                    break;
+                }
+                pixels[py * TILE_SIZE + px] = rowBorders[py] || colBorders[px] ? BORDER_RGB : mCellColors[rowOffset + col];
+            }
+        }
+
+        if(cellPixels >= MIN_ICON_CELL_SIZE){
+            drawIcons(tile, tileX, tileY, cellPixels);
+        }
+        return tile;
+    }
+
+    /**
+     * Draw the policy arrow of every non-walled cell that overlaps the tile.
+     */
+    private void drawIcons(BufferedImage tile, int tileX, int tileY, double cellPixels){
+        int iconSize = (int) (cellPixels * 0.6);
+        BufferedImage[] icons = getScaledIcons(iconSize);
+
+        int firstCol = (int) (tileX * TILE_SIZE / cellPixels);
+        int lastCol = Math.min(mNumCols - 1, (int) (((tileX + 1) * TILE_SIZE - 1) / cellPixels));
+        int firstRow = (int) (tileY * TILE_SIZE / cellPixels);
+        int lastRow = Math.min(mNumRows - 1, (int) (((tileY + 1) * TILE_SIZE - 1) / cellPixels));
+
+        Graphics2D graphics = tile.createGraphics();
+        try{
+            for(int row = firstRow; row <= lastRow; ++row){
+                for(int col = firstCol; col <= lastCol; ++col){
+                    int action = mCellActions[row * mNumCols + col];
+                    if(action < 0){
+                        continue;
+                    }
+                    int x = (int) Math.round(col * cellPixels + (cellPixels - iconSize) / 2) - tileX * TILE_SIZE;
+                    int y = (int) Math.round(row * cellPixels + (cellPixels - iconSize) / 2) - tileY * TILE_SIZE;
+                    graphics.drawImage(icons[action], x, y, null);
+                }
+            }
+        } finally {
+            graphics.dispose();
+        }
+    }
+
+    /**
+     * Return the icons scaled to the given size, scaling and caching them on first use.
+     * @param size
+     * @return
+     */
+    static BufferedImage[] getScaledIcons(int size){
+        return SCALED_ICONS.computeIfAbsent(size, iconSize -> {
+            BufferedImage[] icons = getIcons();
+            BufferedImage[] scaledIcons = new BufferedImage[icons.length];
+            for(int k = 0; k < icons.length; ++k){
+                scaledIcons[k] = new BufferedImage(iconSize, iconSize, BufferedImage.TYPE_INT_ARGB);
+                Graphics2D graphics = scaledIcons[k].createGraphics();
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+                graphics.drawImage(icons[k], 0, 0, iconSize, iconSize, null);
+                graphics.dispose();
+            }
+            return scaledIcons;
+        });
+    }
+
+    private static synchronized BufferedImage[] getIcons(){
+        if(sIcons == null){
+            BufferedImage[] icons = new BufferedImage[ICON_FILES.length];
+            for(int k = 0; k < ICON_FILES.length; ++k){
+                try{
+                    icons[k] = ImageIO.read(new File(ICON_FILES[k]));
+                } catch (IOException e){
+                    throw new UncheckedIOException("Cannot read " + ICON_FILES[k], e);
+                }
+                if(icons[k] == null){
+                    throw new IllegalStateException("Cannot read " + ICON_FILES[k]);
+                }
+            }
+            sIcons = icons;
+        }
+        return sIcons;
+    }
+
+    /**
+     * Heatmap colour for a utility value at the given fraction of the way from the lowest to the highest.
+     * @param fraction
+     * @return
+     */
+    static int getHeatmapRGB(double fraction){
+        Color from = fraction < 0.5 ? LOW_COLOR : MID_COLOR;
+        Color to = fraction < 0.5 ? MID_COLOR : HIGH_COLOR;
+        double t = fraction < 0.5 ? 2 * fraction : 2 * fraction - 1;
+        int red = (int) Math.round(from.getRed() + t * (to.getRed() - from.getRed()));
+        int green = (int) Math.round(from.getGreen() + t * (to.getGreen() - from.getGreen()));
+        int blue = (int) Math.round(from.getBlue() + t * (to.getBlue() - from.getBlue()));
+        return 0xFF000000 | red << 16 | green << 8 | blue;
+    }
+
+    public int getNumTilesX(int zoom){
+        int shift = mMaxZoom - zoom;
+        long width = ((long) mNumCols * mCellSize + (1L << shift) - 1) >> shift;
+        return (int) Math.max(1, (width + TILE_SIZE - 1) / TILE_SIZE);
+    }
+
+    public int getNumTilesY(int zoom){
+        int shift = mMaxZoom - zoom;
+        long height = ((long) mNumRows * mCellSize + (1L << shift) - 1) >> shift;
+        return (int) Math.max(1, (height + TILE_SIZE - 1) / TILE_SIZE);
+    }
+
+    public int getMaxZoom() {
+        return mMaxZoom;
+    }
+}
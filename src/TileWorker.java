@@ -0,0 +1,196 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+public class TileWorker {
+
+    /**
+     * This class is the entry point of a worker process for distributed Value Iteration.
+     * Every worker owns one rectangular tile of the GridWorld, surrounded by a halo of width one
+     * which holds the utility values of the neighbouring cells owned by other workers.
+     * After every sweep, the worker sends the boundary rows and columns of its tile to the
+     * coordinator (see DistributedSolver) and receives its updated halo in return.
+     */
+
+    /**
+     * Number of rows and columns in the tile (excluding the halo).
+     */
+    private int mNumRows;
+    private int mNumCols;
+
+    /**
+     * Number of columns in the tile including the halo, i.e. the stride of the local arrays.
+     */
+    private int mStride;
+
+    private double mDiscountFactor;
+
+    /**
+     * Rewards and utility values of the tile, including the halo, stored in row-major order.
+     * A NaN reward marks a walled cell. Halo cells that lie outside the GridWorld are also
+     * marked as walls, so that the agent bounces back from the edge of the GridWorld.
+     */
+    private double[] mRewards;
+    private double[] mUtilities;
+
+    public static void main(String[] args) throws IOException {
+        String host = args[0];
+        int port = Integer.parseInt(args[1]);
+        int tileIndex = Integer.parseInt(args[2]);
+
+        Socket socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        /**
+         * Identify this worker to the coordinator.
+         */
+        out.writeInt(tileIndex);
+        out.flush();
+
+        TileWorker worker = new TileWorker(in);
+        worker.run(in, out);
+
+        socket.close();
+    }
+
+    /**
+     * Constructor for the TileWorker object. Reads the tile set-up sent by the coordinator.
+     * @param in
+     * @throws IOException
+     */
+    private TileWorker(DataInputStream in) throws IOException {
+        mNumRows = in.readInt();
+        mNumCols = in.readInt();
+        mDiscountFactor = in.readDouble();
+
+        mStride = mNumCols + 2;
+        int numCells = (mNumRows + 2) * mStride;
+
+        mRewards = new double[numCells];
+        mUtilities = new double[numCells];
+
+        for(int i = 0; i < numCells; ++i){
+            mRewards[i] = in.readDouble();
+        }
+    }
+
+    /**
+     * Repeatedly sweep the tile and exchange halos with the coordinator until the coordinator
+     * signals global convergence, then send back the utility values of the whole tile.
+     * @param in
+     * @param out
+     * @throws IOException
+     */
+    private void run(DataInputStream in, DataOutputStream out) throws IOException {
+        while(true){
+            double delta = sweep();
+
+            out.writeDouble(delta);
+            writeEdges(out);
+            out.flush();
+
+            /**
+             * The coordinator reduces the deltas of all workers and decides whether to stop.
+             */
+            boolean converged = in.readBoolean();
+            if(converged){
+                break;
+            }
+            readHalo(in);
+        }
+
+        for(int i = 1; i <= mNumRows; ++i){
+            for(int j = 1; j <= mNumCols; ++j){
+                out.writeDouble(mUtilities[i * mStride + j]);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Perform one in-place sweep of the Bellman update over the tile and return the largest
+     * change in utility value.
+     * @return
+     */
+    private double sweep(){
+        double delta = 0.0;
+
+        for(int i = 1; i <= mNumRows; ++i){
+            for(int j = 1; j <= mNumCols; ++j){
+                int cell = i * mStride + j;
+                if(Double.isNaN(mRewards[cell])){
+                    continue;
+                }
+
+                /**
+                 * Utility of the cell reached when moving UP, RIGHT, DOWN and LEFT.
+                 * If the neighbouring cell is a wall, the agent stays where it is.
+                 */
+                double current = mUtilities[cell];
+                double up = utilityOfMove(cell, cell - mStride);
+                double right = utilityOfMove(cell, cell + 1);
+                double down = utilityOfMove(cell, cell + mStride);
+                double left = utilityOfMove(cell, cell - 1);
+
+                double stateUtility = mRewards[cell] + mDiscountFactor * Action.getMaximumExpectedUtility(up, right, down, left);
+
+                delta = Math.max(delta, Math.abs(stateUtility - current));
+                mUtilities[cell] = stateUtility;
+            }
+        }
+        return delta;
+    }
+
+    private double utilityOfMove(int cell, int nextCell){
+        if(Double.isNaN(mRewards[nextCell])){
+            return mUtilities[cell];
+        }
+        return mUtilities[nextCell];
+    }
+
+    /**
+     * Send the first and last rows, followed by the first and last columns of the tile.
+     * @param out
+     * @throws IOException
+     */
+    private void writeEdges(DataOutputStream out) throws IOException {
+        for(int j = 1; j <= mNumCols; ++j){
+            out.writeDouble(mUtilities[mStride + j]);
+        }
+        for(int j = 1; j <= mNumCols; ++j){
+            out.writeDouble(mUtilities[mNumRows * mStride + j]);
+        }
+        for(int i = 1; i <= mNumRows; ++i){
+            out.writeDouble(mUtilities[i * mStride + 1]);
+        }
+        for(int i = 1; i <= mNumRows; ++i){
+            out.writeDouble(mUtilities[i * mStride + mNumCols]);
+        }
+    }
+
+    /**
+     * Receive the halo rows above and below, followed by the halo columns left and right of the tile.
+     * @param in
+     * @throws IOException
+     */
+    private void readHalo(DataInputStream in) throws IOException {
+        for(int j = 1; j <= mNumCols; ++j){
+            mUtilities[j] = in.readDouble();
+        }
+        for(int j = 1; j <= mNumCols; ++j){
+            mUtilities[(mNumRows + 1) * mStride + j] = in.readDouble();
+        }
+        for(int i = 1; i <= mNumRows; ++i){
+            mUtilities[i * mStride] = in.readDouble();
+        }
+        for(int i = 1; i <= mNumRows; ++i){
+            mUtilities[i * mStride + mNumCols + 1] = in.readDouble();
+        }
+    }
+}
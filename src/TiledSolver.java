@@ -0,0 +1,184 @@
+public class TiledSolver {
+
+    /**
+     * This class implements experimental row-blocked Value Iteration over a CompactStateSpace.
+     * The states are split into tiles of whole rows (which are contiguous in the compact layout), and
+     * several in-place (Gauss-Seidel) sweeps are run on each tile before moving on to the next one. The
+     * rows just above and below a tile are read straight from the shared utility array, holding the
+     * newest values of the tile above and the values from the previous pass of the tile below; there are
+     * no halo copies and no redundant halo computation, so this is not full temporal blocking.
+     * The local sweeps do not reduce the number of backups, and so far no speedup over plain Value
+     * Iteration has been measured (sweeps are compute-bound at about 15 ns per state), so it is not one of
+     * the solvers offered by default. The number of rows per tile can be given, or tuned automatically by
+     * timing the first passes.
+     */
+
+    /**
+     * Approximate number of bytes per state touched by a sweep: utility, reward and four neighbour indices.
+     */
+    private static final int BYTES_PER_STATE = 8 + 8 + 4 * CompactStateSpace.NUM_DIRECTIONS;
+
+    /**
+     * Smallest tile, in bytes, tried by the automatic tuning.
+     */
+    private static final int MIN_TUNING_TILE_BYTES = 32 * 1024;
+
+    /**
+     * Number of passes timed for every candidate tile height. The fastest one is kept, so that a single
+     * pass slowed down by the JIT compiler, the garbage collector or another process does not decide.
+     */
+    private static final int TUNING_PASSES = 3;
+
+    private CompactStateSpace mStateSpace;
+
+    private double mDiscountFactor;
+
+    /**
+     * Index of the first state in every row, with mRowStart[numRows] == numStates.
+     */
+    private int[] mRowStart;
+
+    /**
+     * Utility values of the states from the last solve.
+     */
+    private double[] mUtilities;
+
+    /**
+     * Statistics of the last solve.
+     */
+    private int mNumPasses;
+    private long mNumBackups;
+    private int mTileRows;
+
+    /**
+     * Constructor for the TiledSolver object.
+     * @param stateSpace
+     * @param discountFactor
+     */
+    public TiledSolver(CompactStateSpace stateSpace, double discountFactor){
+        mStateSpace = stateSpace;
+        mDiscountFactor = discountFactor;
+
+        int numRows = stateSpace.getNumRows();
+        mRowStart = new int[numRows + 1];
+        for(int row = 0; row <= numRows; ++row){
+            mRowStart[row] = stateSpace.getFirstStateInRow(row);
+        }
+    }
+
+    /**
+     * Tiled Value Iteration. Every pass visits all the tiles in order and runs up to numLocalSweeps
+     * in-place sweeps on each. The convergence check is the same as for plain Value Iteration, applied
+     * to the first sweep of every tile in a pass, i.e. the change since the previous pass.
+     * If tileRows is not positive, the number of rows per tile is tuned automatically.
+     * Returns the number of passes.
+     * @param epsilon
+     * @param numLocalSweeps
+     * @param tileRows
+     * @return
+     */
+    public int valueIteration(double epsilon, int numLocalSweeps, int tileRows){
+        mUtilities = new double[mStateSpace.getNumStates()];
+        mNumPasses = 0;
+        mNumBackups = 0;
+
+        if(tileRows > 0){
+            mTileRows = Math.min(tileRows, mStateSpace.getNumRows());
+        }
+        else{
+            /**
+             * Time TUNING_PASSES passes for every candidate tile height, doubling from a small tile up to the
+             * whole grid, and keep the fastest per backup. The tuning passes do useful work and count towards
+             * the solve.
+             */
+            double bestTimePerBackup = Double.POSITIVE_INFINITY;
+            for(int candidate = getMinimumTuningRows(); ; candidate *= 2){
+                candidate = Math.min(candidate, mStateSpace.getNumRows());
+
+                for(int k = 0; k < TUNING_PASSES; ++k){
+                    long numBackupsBefore = mNumBackups;
+                    long startTime = System.nanoTime();
+                    double delta = pass(epsilon, numLocalSweeps, candidate);
+                    double timePerBackup = (double) (System.nanoTime() - startTime) / Math.max(1, mNumBackups - numBackupsBefore);
+
+                    if(timePerBackup < bestTimePerBackup){
+                        bestTimePerBackup = timePerBackup;
+                        mTileRows = candidate;
+                    }
+                    if(delta < epsilon){
+                        return mNumPasses;
+                    }
+                }
+                if(candidate == mStateSpace.getNumRows()){
+                    break;
+                }
+            }
+        }
+
+        while(true){
+            double delta = pass(epsilon, numLocalSweeps, mTileRows);
+            if(delta < epsilon){
+                return mNumPasses;
+            }
+        }
+    }
+
+    /**
+     * One pass over all the tiles. Returns the largest change in utility value in the first local sweep
+     * of every tile.
+     * @param epsilon
+     * @param numLocalSweeps
+     * @param tileRows
+     * @return
+     */
+    private double pass(double epsilon, int numLocalSweeps, int tileRows){
+        mNumPasses++;
+        int numRows = mStateSpace.getNumRows();
+        double delta = 0.0;
+
+        for(int firstRow = 0; firstRow < numRows; firstRow += tileRows){
+            int firstState = mRowStart[firstRow];
+            int lastState = mRowStart[Math.min(firstRow + tileRows, numRows)];
+
+            delta = Math.max(delta, mStateSpace.sweep(mUtilities, null, mDiscountFactor, firstState, lastState));
+            mNumBackups += lastState - firstState;
+
+            /**
+             * Further local sweeps while the tile is in cache, until it has converged locally.
+             */
+            for(int k = 1; k < numLocalSweeps; ++k){
+                double localDelta = mStateSpace.sweep(mUtilities, null, mDiscountFactor, firstState, lastState);
+                mNumBackups += lastState - firstState;
+                if(localDelta < epsilon){
+                    break;
+                }
+            }
+        }
+        return delta;
+    }
+
+    /**
+     * Number of rows in the smallest tile tried by the automatic tuning.
+     * @return
+     */
+    private int getMinimumTuningRows(){
+        long bytesPerRow = Math.max(1L, (long) mStateSpace.getNumStates() * BYTES_PER_STATE / mStateSpace.getNumRows());
+        return (int) Math.max(1L, MIN_TUNING_TILE_BYTES / bytesPerRow);
+    }
+
+    public double[] getUtilities() {
+        return mUtilities;
+    }
+
+    public int getNumPasses() {
+        return mNumPasses;
+    }
+
+    public long getNumBackups() {
+        return mNumBackups;
+    }
+
+    public int getTileRows() {
+        return mTileRows;
+    }
+}
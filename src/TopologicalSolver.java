@@ -0,0 +1,252 @@
+import java.util.Arrays;
+
+public class TopologicalSolver {
+
+    /**
+     * This class implements Topological Value Iteration over a CompactStateSpace.
+     * The states are split into the strongly connected components of the transition graph, where state s
+     * has an edge to every state it can reach in one move. The utility value of a state only depends on the
+     * states of its own component and of the components reachable from it, so the components are solved
+     * one at a time in reverse topological order: each is swept until it has converged, using the final
+     * values of the components already solved, and is never touched again.
+     * The components are found with an iterative version of Tarjan's algorithm, so the call depth does not
+     * grow with the size of the world. A component made of a single state (e.g. a cell sealed off by walls)
+     * is solved exactly in a single backup.
+     */
+
+    private CompactStateSpace mStateSpace;
+
+    private double mDiscountFactor;
+
+    /**
+     * States of every component, in increasing order within each component. The states of component c
+     * are mComponentStates[mComponentStart[c]] .. mComponentStates[mComponentStart[c + 1] - 1], and the
+     * components are stored in reverse topological order (every component before the ones that reach it).
+     */
+    private int[] mComponentStates;
+    private int[] mComponentStart;
+    private int mNumComponents;
+
+    /**
+     * Utility values of the states from the last solve.
+     */
+    private double[] mUtilities;
+
+    /**
+     * Statistics of the last solve.
+     */
+    private int mMaxComponentSweeps;
+    private long mNumBackups;
+
+    /**
+     * Constructor for the TopologicalSolver object. Computes the strongly connected components.
+     * @param stateSpace
+     * @param discountFactor
+     */
+    public TopologicalSolver(CompactStateSpace stateSpace, double discountFactor){
+        mStateSpace = stateSpace;
+        mDiscountFactor = discountFactor;
+        computeComponents();
+    }
+
+    /**
+     * Tarjan's algorithm with an explicit call stack. Components are completed in reverse topological
+     * order, which is the order in which they are solved.
+     */
+    private void computeComponents(){
+        int numStates = mStateSpace.getNumStates();
+
+        int[] index = new int[numStates];
+        int[] lowLink = new int[numStates];
+        boolean[] onStack = new boolean[numStates];
+        Arrays.fill(index, -1);
+
+        /**
+         * States visited but not yet assigned to a component.
+         */
+        int[] stack = new int[numStates];
+        int stackSize = 0;
+
+        /**
+         * The depth-first search path, and the next direction to explore from every state on it.
+         */
+        int[] callStack = new int[numStates];
+        int[] nextDirection = new int[numStates];
+        int depth = 0;
+
+        mComponentStates = new int[numStates];
+        mComponentStart = new int[numStates + 1];
+        mNumComponents = 0;
+        int numAssigned = 0;
+        int nextIndex = 0;
+
+        for(int root = 0; root < numStates; ++root){
+            if(index[root] >= 0){
+                continue;
+            }
+
+            index[root] = lowLink[root] = nextIndex++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            callStack[depth] = root;
+            nextDirection[depth] = 0;
+            depth++;
+
+            while(depth > 0){
+                int s = callStack[depth - 1];
+
+                if(nextDirection[depth - 1] < CompactStateSpace.NUM_DIRECTIONS){
+                    int t = mStateSpace.getNeighbour(s, nextDirection[depth - 1]++);
+                    if(t == s){
+                        continue;
+                    }
+                    if(index[t] < 0){
+                        index[t] = lowLink[t] = nextIndex++;
+                        stack[stackSize++] = t;
+                        onStack[t] = true;
+                        callStack[depth] = t;
+                        nextDirection[depth] = 0;
+                        depth++;
+                    }
+                    else if(onStack[t]){
+                        lowLink[s] = Math.min(lowLink[s], index[t]);
+                    }
+                    continue;
+                }
+
+                /**
+                 * All the edges of s are explored: return to its parent, and pop a component if s is its root.
+                 */
+                depth--;
+                if(depth > 0){
+                    int parent = callStack[depth - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[s]);
+                }
+                if(lowLink[s] == index[s]){
+                    int firstAssigned = numAssigned;
+                    int t;
+                    do{
+                        t = stack[--stackSize];
+                        onStack[t] = false;
+                        mComponentStates[numAssigned++] = t;
+                    } while(t != s);
+
+                    Arrays.sort(mComponentStates, firstAssigned, numAssigned);
+                    mComponentStart[++mNumComponents] = numAssigned;
+                }
+            }
+        }
+        mComponentStart = Arrays.copyOf(mComponentStart, mNumComponents + 1);
+    }
+
+    /**
+     * Topological Value Iteration. Every component is swept until the largest change in utility value
+     * within it is below epsilon, the same convergence check as plain Value Iteration.
+     * Returns the largest number of sweeps needed by any component.
+     * @param epsilon
+     * @return
+     */
+    public int valueIteration(double epsilon){
+        mUtilities = new double[mStateSpace.getNumStates()];
+        mMaxComponentSweeps = 0;
+        mNumBackups = 0;
+
+        for(int c = 0; c < mNumComponents; ++c){
+            int first = mComponentStart[c];
+            int last = mComponentStart[c + 1];
+
+            if(last - first == 1){
+                solveSingleState(mComponentStates[first]);
+                mNumBackups++;
+                mMaxComponentSweeps = Math.max(mMaxComponentSweeps, 1);
+                continue;
+            }
+
+            int numSweeps = 0;
+            double delta;
+            do{
+                delta = sweep(first, last);
+                mNumBackups += last - first;
+                numSweeps++;
+            } while(delta >= epsilon);
+            mMaxComponentSweeps = Math.max(mMaxComponentSweeps, numSweeps);
+        }
+        return mMaxComponentSweeps;
+    }
+
+    /**
+     * One in-place Bellman optimality sweep over the states of a component.
+     * Returns the largest change in utility value.
+     * @param first
+     * @param last
+     * @return
+     */
+    private double sweep(int first, int last){
+        double delta = 0.0;
+        for(int k = first; k < last; ++k){
+            int s = mComponentStates[k];
+            double stateUtility = mStateSpace.getReward(s) +
+                    mDiscountFactor * mStateSpace.getMaximumExpectedUtility(mUtilities, s);
+
+            delta = Math.max(delta, Math.abs(stateUtility - mUtilities[s]));
+            mUtilities[s] = stateUtility;
+        }
+        return delta;
+    }
+
+    /**
+     * Exact utility value of a state that forms a component on its own. Every move either stays in s or
+     * leads to a state whose value is already final, so for every action the Bellman equation
+     * U = R + discount * (pStay * U + sum of p * U(next)) can be solved for U directly.
+     * @param s
+     */
+    private void solveSingleState(int s){
+        double maximumUtility = Double.NEGATIVE_INFINITY;
+        for(int action = 0; action < CompactStateSpace.NUM_DIRECTIONS; ++action){
+            double stayProb = 0.0;
+            double expectedUtility = 0.0;
+            for(int direction = 0; direction < CompactStateSpace.NUM_DIRECTIONS; ++direction){
+                int t = mStateSpace.getNeighbour(s, direction);
+                double prob = Action.getDirectionProb(action, direction);
+                if(t == s){
+                    stayProb += prob;
+                }
+                else{
+                    expectedUtility += prob * mUtilities[t];
+                }
+            }
+            double utility = (mStateSpace.getReward(s) + mDiscountFactor * expectedUtility) /
+                    (1.0 - mDiscountFactor * stayProb);
+            maximumUtility = Math.max(maximumUtility, utility);
+        }
+        mUtilities[s] = maximumUtility;
+    }
+
+    /**
+     * Number of states in the largest component.
+     * @return
+     */
+    public int getLargestComponentSize(){
+        int largest = 0;
+        for(int c = 0; c < mNumComponents; ++c){
+            largest = Math.max(largest, mComponentStart[c + 1] - mComponentStart[c]);
+        }
+        return largest;
+    }
+
+    public int getNumComponents() {
+        return mNumComponents;
+    }
+
+    public double[] getUtilities() {
+        return mUtilities;
+    }
+
+    public int getMaxComponentSweeps() {
+        return mMaxComponentSweeps;
+    }
+
+    public long getNumBackups() {
+        return mNumBackups;
+    }
+}
@@ -0,0 +1,406 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+public class TransitionEstimator implements AutoCloseable {
+
+    /**
+     * This class estimates the transition model of a GridWorld from logged transitions, and keeps a
+     * solution of the latest model. Transition logs are binary files of RECORD_BYTES byte records, each
+     * made of three little-endian ints: the row-major cell before the move, the action (0 = UP, 1 = RIGHT,
+     * 2 = DOWN, 3 = LEFT) and the row-major cell after the move.
+     *
+     * A log is memory-mapped and read in batches of BATCH_RECORDS records, in parallel. The outcome of every
+     * transition is counted in a table of primitive int counters, one per outcome of every action in every
+     * state. To avoid any contention, the counters are split into stripes: every batch takes a stripe that
+     * no other thread is using (creating one if all are busy), counts into it without synchronization, and
+     * gives it back. Publishing a model drains every free stripe into the total counts, so no count is ever
+     * lost or counted twice, and the ingest threads never wait for it.
+     *
+     * A new model is published at most once per publish interval while a log is being read, and at the end
+     * of every log. Every published model is re-solved on a separate thread by Value Iteration, warm-started
+     * from the solution of the previous model, which is close to it. Models published while a solve is
+     * running are coalesced: only the latest one is solved next.
+     */
+
+    /**
+     * Size of a transition record in bytes.
+     */
+    public static final int RECORD_BYTES = 12;
+
+    /**
+     * Number of records read by one task.
+     */
+    private static final int BATCH_RECORDS = 1 << 16;
+
+    /**
+     * Largest number of records mapped at once, in whole batches (a mapping is limited to 2 GB).
+     */
+    private static final int CHUNK_RECORDS = (Integer.MAX_VALUE / (BATCH_RECORDS * RECORD_BYTES)) * BATCH_RECORDS;
+
+    private CompactStateSpace mStateSpace;
+
+    private double mDiscountFactor;
+    private double mEpsilon;
+
+    private long mPublishIntervalNanos;
+    private final AtomicLong mNextPublishNanos = new AtomicLong();
+
+    /**
+     * State index of every row-major cell, or -1 for walls.
+     */
+    private int[] mCellStates;
+
+    /**
+     * Stripes of counters not currently used by an ingest thread, and all the stripes. The counters are
+     * indexed like the probabilities of TransitionModel.
+     */
+    private final ConcurrentLinkedQueue<int[]> mFreeStripes = new ConcurrentLinkedQueue<>();
+    private final List<int[]> mStripes = new ArrayList<>();
+
+    /**
+     * Counts drained from the stripes, guarded by the estimator's lock. Only touched when publishing.
+     */
+    private long[] mCounts;
+    private long mVersion;
+
+    /**
+     * Number of transitions counted, and of records rejected because the cells are not open or the move
+     * is not between neighbours.
+     */
+    private final AtomicLong mNumIngested = new AtomicLong();
+    private final AtomicLong mNumRejected = new AtomicLong();
+
+    /**
+     * Latest published model and latest solution.
+     */
+    private final AtomicReference<TransitionModel> mModel = new AtomicReference<>();
+    private final AtomicReference<Solution> mSolution = new AtomicReference<>();
+
+    private final ExecutorService mSolveExecutor;
+
+    /**
+     * Constructor for the TransitionEstimator object. Models are solved down to epsilon, and published at
+     * most once every publishIntervalMillis while a log is being read. Starts from the fixed transition
+     * probabilities, which are solved straight away.
+     * @param stateSpace
+     * @param discountFactor
+     * @param epsilon
+     * @param publishIntervalMillis
+     */
+    public TransitionEstimator(CompactStateSpace stateSpace, double discountFactor, double epsilon, long publishIntervalMillis){
+        mStateSpace = stateSpace;
+        mDiscountFactor = discountFactor;
+        mEpsilon = epsilon;
+        mPublishIntervalNanos = publishIntervalMillis * 1000000;
+
+        mCellStates = new int[stateSpace.getNumRows() * stateSpace.getNumCols()];
+        Arrays.fill(mCellStates, -1);
+        for(int s = 0; s < stateSpace.getNumStates(); ++s){
+            mCellStates[stateSpace.getCell(s)] = s;
+        }
+        mCounts = new long[getTableSize()];
+
+        mSolveExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "TransitionEstimator solver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        publishModel();
+    }
+
+    /**
+     * Read all the transitions of a log file, publishing models along the way. Returns the number of
+     * records read.
+     * @param logFile
+     * @return
+     * @throws IOException
+     */
+    public long ingest(File logFile) throws IOException {
+        mNextPublishNanos.set(System.nanoTime() + mPublishIntervalNanos);
+
+        long numRecords;
+        try(RandomAccessFile file = new RandomAccessFile(logFile, "r"); FileChannel channel = file.getChannel()){
+            numRecords = channel.size() / RECORD_BYTES;
+            if(numRecords * RECORD_BYTES != channel.size()){
+                throw new IOException(logFile + " does not hold whole " + RECORD_BYTES + " byte records");
+            }
+
+            for(long firstRecord = 0; firstRecord < numRecords; firstRecord += CHUNK_RECORDS){
+                int numChunkRecords = (int) Math.min(CHUNK_RECORDS, numRecords - firstRecord);
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY,
+                        firstRecord * RECORD_BYTES, (long) numChunkRecords * RECORD_BYTES);
+
+                int numBatches = (numChunkRecords + BATCH_RECORDS - 1) / BATCH_RECORDS;
+                IntStream.range(0, numBatches).parallel().forEach(batch -> {
+                    int first = batch * BATCH_RECORDS;
+                    ingestBatch(chunk, first, Math.min(first + BATCH_RECORDS, numChunkRecords));
+                    if(isPublishDue()){
+                        publishModel();
+                        /**
+                         * Count the interval from the end of publishing, so that publishing a large
+                         * model never takes up most of the time.
+                         */
+                        mNextPublishNanos.set(System.nanoTime() + mPublishIntervalNanos);
+                    }
+                });
+            }
+        }
+
+        publishModel();
+        return numRecords;
+    }
+
+    /**
+     * Count the records first .. last - 1 of a mapped chunk into a free stripe.
+     */
+    private void ingestBatch(ByteBuffer chunk, int first, int last){
+        ByteBuffer buffer = chunk.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int[] stripe = takeStripe();
+        int numCells = mCellStates.length;
+        int numRejected = 0;
+
+        for(int record = first; record < last; ++record){
+            int offset = record * RECORD_BYTES;
+            int fromCell = buffer.getInt(offset);
+            int action = buffer.getInt(offset + 4);
+            int toCell = buffer.getInt(offset + 8);
+
+            if(fromCell < 0 || fromCell >= numCells || toCell < 0 || toCell >= numCells ||
+                    action < 0 || action >= CompactStateSpace.NUM_DIRECTIONS){
+                numRejected++;
+                continue;
+            }
+            int s = mCellStates[fromCell];
+            int nextState = mCellStates[toCell];
+            int outcome = s < 0 || nextState < 0 ? -1 : getOutcome(s, nextState);
+            if(outcome < 0){
+                numRejected++;
+                continue;
+            }
+            stripe[(s * CompactStateSpace.NUM_DIRECTIONS + action) * TransitionModel.NUM_OUTCOMES + outcome]++;
+        }
+
+        mFreeStripes.add(stripe);
+        mNumIngested.addAndGet(last - first - numRejected);
+        mNumRejected.addAndGet(numRejected);
+    }
+
+    /**
+     * Return the outcome (direction or STAY) of a move from state s to nextState, or -1 if the states are
+     * not neighbours.
+     */
+    private int getOutcome(int s, int nextState){
+        if(nextState == s){
+            return TransitionModel.STAY;
+        }
+        for(int direction = 0; direction < CompactStateSpace.NUM_DIRECTIONS; ++direction){
+            if(mStateSpace.getNeighbour(s, direction) == nextState){
+                return direction;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Take a stripe no other thread is using, or create one.
+     */
+    private int[] takeStripe(){
+        int[] stripe = mFreeStripes.poll();
+        if(stripe == null){
+            stripe = new int[getTableSize()];
+            synchronized (mStripes){
+                mStripes.add(stripe);
+            }
+        }
+        return stripe;
+    }
+
+    private int getTableSize(){
+        return mStateSpace.getNumStates() * CompactStateSpace.NUM_DIRECTIONS * TransitionModel.NUM_OUTCOMES;
+    }
+
+    /**
+     * Whether a model is due, in which case the caller is the one to publish it.
+     */
+    private boolean isPublishDue(){
+        long nextPublishNanos = mNextPublishNanos.get();
+        long now = System.nanoTime();
+        return now >= nextPublishNanos && mNextPublishNanos.compareAndSet(nextPublishNanos, now + mPublishIntervalNanos);
+    }
+
+    /**
+     * Drain the counts of every free stripe into the total counts, publish a new model from them, and
+     * schedule a warm-started solve of it. Counts in stripes that are in use are published with the next
+     * model. Returns the new model.
+     * @return
+     */
+    public synchronized TransitionModel publishModel(){
+        /**
+         * Every stripe is taken in turn, so no ingest thread counts into it while it is drained.
+         */
+        int numStripes;
+        synchronized (mStripes){
+            numStripes = mStripes.size();
+        }
+        for(int k = 0; k < numStripes; ++k){
+            int[] stripe = mFreeStripes.poll();
+            if(stripe == null){
+                break;
+            }
+            for(int i = 0; i < stripe.length; ++i){
+                if(stripe[i] != 0){
+                    mCounts[i] += stripe[i];
+                    stripe[i] = 0;
+                }
+            }
+            mFreeStripes.add(stripe);
+        }
+
+        TransitionModel model = new TransitionModel(mStateSpace, ++mVersion, mCounts);
+        mModel.set(model);
+        mSolveExecutor.execute(this::solveLatestModel);
+        return model;
+    }
+
+    /**
+     * Solve the latest model, unless it has been solved already. Runs on the solver thread only.
+     */
+    private void solveLatestModel(){
+        TransitionModel model = mModel.get();
+        Solution lastSolution = mSolution.get();
+        if(lastSolution != null && lastSolution.getModelVersion() >= model.getVersion()){
+            return;
+        }
+
+        PrecisionSolver solver = new PrecisionSolver(model, mDiscountFactor);
+        int numIterations = solver.valueIteration(PrecisionSolver.Precision.DOUBLE, mEpsilon,
+                lastSolution == null ? null : lastSolution.mUtilities);
+        mSolution.set(new Solution(model.getVersion(), solver.getUtilities(), solver.getPolicy(), numIterations));
+    }
+
+    /**
+     * Wait until the latest published model has been solved, and return its solution.
+     * @return
+     * @throws InterruptedException
+     */
+    public Solution awaitSolution() throws InterruptedException {
+        try{
+            mSolveExecutor.submit(this::solveLatestModel).get();
+        } catch (ExecutionException e){
+            throw new IllegalStateException("Solving the transition model failed", e.getCause());
+        }
+        return mSolution.get();
+    }
+
+    /**
+     * Latest published model. Can be called from any thread.
+     * @return
+     */
+    public TransitionModel getModel() {
+        return mModel.get();
+    }
+
+    /**
+     * Solution of the latest model solved so far, which may be older than the latest model.
+     * Can be called from any thread.
+     * @return
+     */
+    public Solution getSolution() {
+        return mSolution.get();
+    }
+
+    public long getNumIngested() {
+        return mNumIngested.get();
+    }
+
+    public long getNumRejected() {
+        return mNumRejected.get();
+    }
+
+    /**
+     * Number of counter stripes, i.e. the largest number of batches counted at the same time.
+     * @return
+     */
+    public int getNumStripes() {
+        synchronized (mStripes){
+            return mStripes.size();
+        }
+    }
+
+    /**
+     * Stop the solver thread.
+     */
+    @Override
+    public void close(){
+        mSolveExecutor.shutdownNow();
+    }
+
+    /**
+     * Utility values and policy (by state index) of a published model.
+     */
+    public static class Solution {
+
+        private final long mModelVersion;
+        private final double[] mUtilities;
+        private final int[] mPolicy;
+        private final int mNumIterations;
+
+        private Solution(long modelVersion, double[] utilities, int[] policy, int numIterations){
+            mModelVersion = modelVersion;
+            mUtilities = utilities;
+            mPolicy = policy;
+            mNumIterations = numIterations;
+        }
+
+        public long getModelVersion() {
+            return mModelVersion;
+        }
+
+        public double getUtility(int s) {
+            return mUtilities[s];
+        }
+
+        public int getAction(int s) {
+            return mPolicy[s];
+        }
+
+        /**
+         * Return a copy of the utility values.
+         * @return
+         */
+        public double[] toUtilityArray() {
+            return mUtilities.clone();
+        }
+
+        /**
+         * Return a copy of the policy.
+         * @return
+         */
+        public int[] toPolicyArray() {
+            return mPolicy.clone();
+        }
+
+        /**
+         * Number of Value Iteration sweeps, counted from the previous solution.
+         * @return
+         */
+        public int getNumIterations() {
+            return mNumIterations;
+        }
+    }
+}
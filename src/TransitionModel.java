@@ -0,0 +1,222 @@
+public class TransitionModel implements StateSpace {
+
+    /**
+     * This class is a transition model of a GridWorld estimated from observed transitions (see
+     * TransitionEstimator), in place of the fixed 0.8 / 0.1 probabilities of Action. For every state and
+     * action it holds the probability of each outcome: a move UP, RIGHT, DOWN or LEFT, or staying in place.
+     * A move into a wall leads back to the state itself, as in CompactStateSpace. The observed counts are
+     * blended with the fixed probabilities, weighted as PRIOR_WEIGHT observations, so that states and
+     * actions that were rarely or never observed fall back to the fixed model.
+     * The model is immutable, and implements StateSpace so that it can be solved by PrecisionSolver.
+     */
+
+    /**
+     * Number of outcomes of an action: the four directions, and staying in place.
+     */
+    public static final int NUM_OUTCOMES = 5;
+    public static final int STAY = 4;
+
+    /**
+     * Weight of the fixed transition probabilities, in number of observations.
+     */
+    public static final double PRIOR_WEIGHT = 10;
+
+    private CompactStateSpace mStateSpace;
+
+    private long mVersion;
+
+    /**
+     * Probability of every outcome of every action in every state, at
+     * [(s * NUM_DIRECTIONS + action) * NUM_OUTCOMES + outcome].
+     */
+    private double[] mProbs;
+
+    /**
+     * Number of observed transitions of every action in every state, at [s * NUM_DIRECTIONS + action].
+     */
+    private long[] mNumObservations;
+
+    /**
+     * Constructor for the TransitionModel object, from the number of observations of every outcome of
+     * every action in every state, indexed like the probabilities.
+     * @param stateSpace
+     * @param version
+     * @param counts
+     */
+    TransitionModel(CompactStateSpace stateSpace, long version, long[] counts){
+        mStateSpace = stateSpace;
+        mVersion = version;
+
+        int numPairs = stateSpace.getNumStates() * CompactStateSpace.NUM_DIRECTIONS;
+        mProbs = new double[numPairs * NUM_OUTCOMES];
+        mNumObservations = new long[numPairs];
+
+        for(int pair = 0; pair < numPairs; ++pair){
+            int action = pair % CompactStateSpace.NUM_DIRECTIONS;
+            int base = pair * NUM_OUTCOMES;
+
+            long numObservations = 0;
+            for(int outcome = 0; outcome < NUM_OUTCOMES; ++outcome){
+                numObservations += counts[base + outcome];
+            }
+            mNumObservations[pair] = numObservations;
+
+            double total = numObservations + PRIOR_WEIGHT;
+            for(int direction = 0; direction < CompactStateSpace.NUM_DIRECTIONS; ++direction){
+                mProbs[base + direction] = (counts[base + direction] +
+                        PRIOR_WEIGHT * Action.getDirectionProb(action, direction)) / total;
+            }
+            mProbs[base + STAY] = counts[base + STAY] / total;
+        }
+    }
+
+    /**
+     * Expected utility of taking the given action in state s.
+     * @param utilities
+     * @param s
+     * @param action
+     * @return
+     */
+    public double getExpectedUtility(double[] utilities, int s, int action){
+        int base = (s * CompactStateSpace.NUM_DIRECTIONS + action) * NUM_OUTCOMES;
+        return mProbs[base + CompactStateSpace.UP] * utilities[mStateSpace.getNeighbour(s, CompactStateSpace.UP)] +
+                mProbs[base + CompactStateSpace.RIGHT] * utilities[mStateSpace.getNeighbour(s, CompactStateSpace.RIGHT)] +
+                mProbs[base + CompactStateSpace.DOWN] * utilities[mStateSpace.getNeighbour(s, CompactStateSpace.DOWN)] +
+                mProbs[base + CompactStateSpace.LEFT] * utilities[mStateSpace.getNeighbour(s, CompactStateSpace.LEFT)] +
+                mProbs[base + STAY] * utilities[s];
+    }
+
+    private double getExpectedUtility(float[] utilities, int s, int action){
+        int base = (s * CompactStateSpace.NUM_DIRECTIONS + action) * NUM_OUTCOMES;
+        return mProbs[base + CompactStateSpace.UP] * utilities[mStateSpace.getNeighbour(s, CompactStateSpace.UP)] +
+                mProbs[base + CompactStateSpace.RIGHT] * utilities[mStateSpace.getNeighbour(s, CompactStateSpace.RIGHT)] +
+                mProbs[base + CompactStateSpace.DOWN] * utilities[mStateSpace.getNeighbour(s, CompactStateSpace.DOWN)] +
+                mProbs[base + CompactStateSpace.LEFT] * utilities[mStateSpace.getNeighbour(s, CompactStateSpace.LEFT)] +
+                mProbs[base + STAY] * utilities[s];
+    }
+
+    /**
+     * Return the action with the maximum expected utility in state s. Near-ties are resolved in favour
+     * of the earlier action in the order UP, RIGHT, DOWN, LEFT.
+     * @param utilities
+     * @param s
+     * @return
+     */
+    public int getBestAction(double[] utilities, int s){
+        int bestAction = CompactStateSpace.UP;
+        double maximumUtility = getExpectedUtility(utilities, s, CompactStateSpace.UP);
+        for(int action = CompactStateSpace.RIGHT; action < CompactStateSpace.NUM_DIRECTIONS; ++action){
+            double expectedUtility = getExpectedUtility(utilities, s, action);
+            if(maximumUtility + ACTION_TIE_TOLERANCE < expectedUtility){
+                maximumUtility = expectedUtility;
+                bestAction = action;
+            }
+        }
+        return bestAction;
+    }
+
+    @Override
+    public double sweep(double[] utilities, int[] policy, double discountFactor){
+        double delta = 0.0;
+        for(int s = 0; s < utilities.length; ++s){
+            double expectedUtility;
+            if(policy == null){
+                expectedUtility = getExpectedUtility(utilities, s, CompactStateSpace.UP);
+                for(int action = CompactStateSpace.RIGHT; action < CompactStateSpace.NUM_DIRECTIONS; ++action){
+                    expectedUtility = Math.max(expectedUtility, getExpectedUtility(utilities, s, action));
+                }
+            }
+            else{
+                expectedUtility = getExpectedUtility(utilities, s, policy[s]);
+            }
+            double stateUtility = mStateSpace.getReward(s) + discountFactor * expectedUtility;
+
+            delta = Math.max(delta, Math.abs(stateUtility - utilities[s]));
+            utilities[s] = stateUtility;
+        }
+        return delta;
+    }
+
+    @Override
+    public double sweep(float[] utilities, float[] rewards, int[] policy, float discountFactor){
+        float delta = 0.0f;
+        for(int s = 0; s < utilities.length; ++s){
+            double expectedUtility;
+            if(policy == null){
+                expectedUtility = getExpectedUtility(utilities, s, CompactStateSpace.UP);
+                for(int action = CompactStateSpace.RIGHT; action < CompactStateSpace.NUM_DIRECTIONS; ++action){
+                    expectedUtility = Math.max(expectedUtility, getExpectedUtility(utilities, s, action));
+                }
+            }
+            else{
+                expectedUtility = getExpectedUtility(utilities, s, policy[s]);
+            }
+            float stateUtility = rewards[s] + discountFactor * (float) expectedUtility;
+
+            delta = Math.max(delta, Math.abs(stateUtility - utilities[s]));
+            utilities[s] = stateUtility;
+        }
+        return delta;
+    }
+
+    @Override
+    public void improvePolicy(double[] utilities, int[] policy){
+        for(int s = 0; s < policy.length; ++s){
+            policy[s] = getBestAction(utilities, s);
+        }
+    }
+
+    @Override
+    public int[] getInitialPolicy(){
+        return mStateSpace.getInitialPolicy();
+    }
+
+    @Override
+    public int getNumStates() {
+        return mStateSpace.getNumStates();
+    }
+
+    @Override
+    public int getNumOpenStates() {
+        return mStateSpace.getNumOpenStates();
+    }
+
+    @Override
+    public double getReward(int s) {
+        return mStateSpace.getReward(s);
+    }
+
+    public CompactStateSpace getStateSpace() {
+        return mStateSpace;
+    }
+
+    /**
+     * Version number of the model. Every model published by a TransitionEstimator has a larger version
+     * than the ones before it.
+     * @return
+     */
+    public long getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Probability of the given outcome (UP, RIGHT, DOWN, LEFT or STAY) of the action in state s.
+     * @param s
+     * @param action
+     * @param outcome
+     * @return
+     */
+    public double getProbability(int s, int action, int outcome) {
+        return mProbs[(s * CompactStateSpace.NUM_DIRECTIONS + action) * NUM_OUTCOMES + outcome];
+    }
+
+    /**
+     * Number of observed transitions of the action in state s.
+     * @param s
+     * @param action
+     * @return
+     */
+    public long getNumObservations(int s, int action) {
+        return mNumObservations[s * CompactStateSpace.NUM_DIRECTIONS + action];
+    }
+}
@@ -0,0 +1,288 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+public class WorldGenerator {
+
+    /**
+     * This class procedurally generates random GridWorlds, deterministically from a seed.
+     * The grid is split into square tiles, and every tile draws from its own random stream, derived
+     * from the seed and the position of the tile only. Tiles can therefore be generated in any order
+     * and in parallel, and always give the same world for the same seed.
+     * Every cell is a wall with probability wallDensity; otherwise it has a positive reward, a negative
+     * reward or the step reward, with the configured probabilities.
+     * generate() writes the open cells tile by tile straight into the arrays of a CompactStateSpace, or
+     * the reward codes of all cells straight into a GridSpace, so no full-grid reward array is ever allocated.
+     */
+
+    public static final double POSITIVE_REWARD = 1.0;
+    public static final double NEGATIVE_REWARD = -1.0;
+    public static final double STEP_REWARD = -0.04;
+
+    /**
+     * Rewards of the reward codes of a generated GridSpace. Code 0 is a wall.
+     */
+    private static final double[] REWARD_VALUES = {Double.NaN, POSITIVE_REWARD, NEGATIVE_REWARD, STEP_REWARD};
+
+    /**
+     * Number of rows and columns in a tile.
+     */
+    private static final int TILE_SIZE = 1024;
+
+    /**
+     * Odd constant (2^64 / golden ratio) used to space out the inputs of mix64.
+     */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long mSeed;
+
+    /**
+     * Cumulative probabilities of a cell being a wall, a positive reward, or a negative reward.
+     * All remaining cells get the step reward.
+     */
+    private double mWallThreshold;
+    private double mPositiveThreshold;
+    private double mNegativeThreshold;
+
+    /**
+     * Constructor for the WorldGenerator object. Takes the seed, the probability of a cell being a wall,
+     * and the probabilities of a cell having a positive or a negative reward.
+     * @param seed
+     * @param wallDensity
+     * @param positiveRewardProb
+     * @param negativeRewardProb
+     */
+    public WorldGenerator(long seed, double wallDensity, double positiveRewardProb, double negativeRewardProb){
+        if(wallDensity < 0 || positiveRewardProb < 0 || negativeRewardProb < 0 ||
+                wallDensity + positiveRewardProb + negativeRewardProb > 1){
+            throw new IllegalArgumentException("Cell probabilities must be non-negative and sum to at most 1");
+        }
+        mSeed = seed;
+        mWallThreshold = wallDensity;
+        mPositiveThreshold = mWallThreshold + positiveRewardProb;
+        mNegativeThreshold = mPositiveThreshold + negativeRewardProb;
+    }
+
+    /**
+     * Generate a world as an array of rewards in row-major order, with NaN for walls.
+     * Gives the same world as generate() for the same dimensions.
+     * @param numRows
+     * @param numCols
+     * @return
+     */
+    public double[] generateRewardArray(int numRows, int numCols){
+        checkDimensions(numRows, numCols);
+        double[] rewardArray = new double[numRows * numCols];
+
+        int numTileCols = getNumTiles(numCols);
+        getTiles(numRows, numCols).forEach(tile -> {
+            int firstRow = (tile / numTileCols) * TILE_SIZE;
+            int firstCol = (tile % numTileCols) * TILE_SIZE;
+            int lastRow = Math.min(firstRow + TILE_SIZE, numRows);
+            int lastCol = Math.min(firstCol + TILE_SIZE, numCols);
+
+            SplittableRandom random = getTileRandom(tile);
+            for(int i = firstRow; i < lastRow; ++i){
+                for(int j = firstCol; j < lastCol; ++j){
+                    rewardArray[i * numCols + j] = getReward(random.nextDouble());
+                }
+            }
+        });
+        return rewardArray;
+    }
+
+    /**
+     * Generate a world straight into a CompactStateSpace. The tiles are generated twice: once to count
+     * the open cells in every row of every tile, and once to write them at their final positions.
+     * @param numRows
+     * @param numCols
+     * @return
+     */
+    public CompactStateSpace generate(int numRows, int numCols){
+        checkDimensions(numRows, numCols);
+        int numTileCols = getNumTiles(numCols);
+
+        /**
+         * Pass 1: number of open cells in every row of every tile, stored at [row * numTileCols + tileCol].
+         */
+        int[] offsets = new int[numRows * numTileCols + 1];
+        getTiles(numRows, numCols).forEach(tile -> {
+            int firstRow = (tile / numTileCols) * TILE_SIZE;
+            int firstCol = (tile % numTileCols) * TILE_SIZE;
+            int lastRow = Math.min(firstRow + TILE_SIZE, numRows);
+            int lastCol = Math.min(firstCol + TILE_SIZE, numCols);
+
+            SplittableRandom random = getTileRandom(tile);
+            for(int i = firstRow; i < lastRow; ++i){
+                int numOpenCells = 0;
+                for(int j = firstCol; j < lastCol; ++j){
+                    if(random.nextDouble() >= mWallThreshold){
+                        numOpenCells++;
+                    }
+                }
+                offsets[i * numTileCols + tile % numTileCols + 1] = numOpenCells;
+            }
+        });
+
+        /**
+         * Prefix sums give the index of the first state in every row of every tile.
+         */
+        for(int k = 1; k < offsets.length; ++k){
+            offsets[k] += offsets[k - 1];
+        }
+        int numStates = offsets[offsets.length - 1];
+
+        int[] cells = new int[numStates];
+        double[] rewards = new double[numStates];
+
+        /**
+         * Pass 2: regenerate every tile from the same stream and write its open cells in place.
+         */
+        getTiles(numRows, numCols).forEach(tile -> {
+            int firstRow = (tile / numTileCols) * TILE_SIZE;
+            int firstCol = (tile % numTileCols) * TILE_SIZE;
+            int lastRow = Math.min(firstRow + TILE_SIZE, numRows);
+            int lastCol = Math.min(firstCol + TILE_SIZE, numCols);
+
+            SplittableRandom random = getTileRandom(tile);
+            for(int i = firstRow; i < lastRow; ++i){
+                int s = offsets[i * numTileCols + tile % numTileCols];
+                for(int j = firstCol; j < lastCol; ++j){
+                    double reward = getReward(random.nextDouble());
+                    if(!Double.isNaN(reward)){
+                        cells[s] = i * numCols + j;
+                        rewards[s] = reward;
+                        s++;
+                    }
+                }
+            }
+        });
+
+        return new CompactStateSpace(numRows, numCols, cells, rewards);
+    }
+
+    /**
+     * Generate an N-dimensional world straight into a GridSpace, with the given slip probability of every
+     * axis. The cells are generated as a two-dimensional world with one row per line along the last axis,
+     * so a world with two axes is the same as the one of generateRewardArray() for the same dimensions.
+     * @param shape
+     * @param axisSlip
+     * @return
+     */
+    public GridSpace generate(int[] shape, double[] axisSlip){
+        long numCells = 1;
+        for(int size : shape){
+            numCells *= size;
+            if(size < 1 || numCells > Integer.MAX_VALUE){
+                throw new IllegalArgumentException("Cannot generate a " + Arrays.toString(shape) + " GridSpace");
+            }
+        }
+        int numCols = shape[shape.length - 1];
+        int numRows = (int) (numCells / numCols);
+        byte[] codes = new byte[(int) numCells];
+
+        int numTileCols = getNumTiles(numCols);
+        getTiles(numRows, numCols).forEach(tile -> {
+            int firstRow = (tile / numTileCols) * TILE_SIZE;
+            int firstCol = (tile % numTileCols) * TILE_SIZE;
+            int lastRow = Math.min(firstRow + TILE_SIZE, numRows);
+            int lastCol = Math.min(firstCol + TILE_SIZE, numCols);
+
+            SplittableRandom random = getTileRandom(tile);
+            for(int i = firstRow; i < lastRow; ++i){
+                for(int j = firstCol; j < lastCol; ++j){
+                    codes[i * numCols + j] = (byte) getRewardCode(random.nextDouble());
+                }
+            }
+        });
+
+        return new GridSpace(shape, codes, REWARD_VALUES, axisSlip);
+    }
+
+    /**
+     * Map a uniform random number to the reward code of a cell (an index into REWARD_VALUES), with
+     * GridSpace.WALL for a wall. Gives the same cells as getReward().
+     * @param uniform
+     * @return
+     */
+    private int getRewardCode(double uniform){
+        if(uniform < mWallThreshold){
+            return GridSpace.WALL;
+        }
+        if(uniform < mPositiveThreshold){
+            return 1;
+        }
+        if(uniform < mNegativeThreshold){
+            return 2;
+        }
+        return 3;
+    }
+
+    /**
+     * Map a uniform random number to the reward of a cell, NaN for a wall.
+     * @param uniform
+     * @return
+     */
+    private double getReward(double uniform){
+        if(uniform < mWallThreshold){
+            return Double.NaN;
+        }
+        if(uniform < mPositiveThreshold){
+            return POSITIVE_REWARD;
+        }
+        if(uniform < mNegativeThreshold){
+            return NEGATIVE_REWARD;
+        }
+        return STEP_REWARD;
+    }
+
+    /**
+     * Derive a seed from a base seed and any number of keys (e.g. the size of a world and a trial index),
+     * mixing in one key at a time, so that different keys give unrelated seeds.
+     * @param baseSeed
+     * @param keys
+     * @return
+     */
+    public static long deriveSeed(long baseSeed, long... keys){
+        long seed = mix64(baseSeed);
+        for(long key : keys){
+            seed = mix64(seed + mix64(key + GOLDEN_GAMMA));
+        }
+        return seed;
+    }
+
+    /**
+     * Random stream of a tile, which depends only on the seed and the tile index. The seed is mixed
+     * before the tile index is added, so that no two seeds share tile streams.
+     * @param tile
+     * @return
+     */
+    private SplittableRandom getTileRandom(int tile){
+        return new SplittableRandom(mix64(mix64(mSeed) + (tile + 1) * GOLDEN_GAMMA));
+    }
+
+    /**
+     * The 64-bit finalizer of SplitMix64, a bijection which spreads every input bit over all output bits.
+     * @param z
+     * @return
+     */
+    private static long mix64(long z){
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static IntStream getTiles(int numRows, int numCols){
+        return IntStream.range(0, getNumTiles(numRows) * getNumTiles(numCols)).parallel();
+    }
+
+    private static int getNumTiles(int size){
+        return (size + TILE_SIZE - 1) / TILE_SIZE;
+    }
+
+    private static void checkDimensions(int numRows, int numCols){
+        if(numRows < 1 || numCols < 1 || (long) numRows * numCols > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("Cannot generate a " + numRows + "x" + numCols + " GridWorld");
+        }
+    }
+}
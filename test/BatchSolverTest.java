@@ -0,0 +1,83 @@
+import java.util.Arrays;
+
+public class BatchSolverTest {
+
+    /**
+     * Checks that every scenario solved by the BatchSolver gives exactly the utility values, policy and
+     * number of iterations of solving it on its own with the PrecisionSolver, including when scenarios in
+     * the middle of the block converge first and their lanes are removed, and that discount factors
+     * outside [0, 1) are rejected.
+     *
+     * Usage: java -cp out BatchSolverTest
+     */
+
+    private static final double EPSILON = 1e-8;
+
+    public static void main(String[] args) {
+        int numFailures = 0;
+
+        double[] rewardArray = new WorldGenerator(3, 0.25, 0.25, 0.25).generateRewardArray(40, 50);
+        CompactStateSpace stateSpace = new CompactStateSpace(40, 50, rewardArray);
+
+        /**
+         * Scaling the rewards down lets a scenario with a large discount factor converge before one with a
+         * smaller discount factor.
+         */
+        double[] discountFactors = {0.9, 0.99, 0.5, 0.95, 0.99, 0.0};
+        double[] rewardScales = {1.0, 1.0, 1.0, 1e-6, 1e-3, 1.0};
+        double[][] rewards = new double[discountFactors.length][];
+        for(int scenario = 0; scenario < rewards.length; ++scenario){
+            rewards[scenario] = new double[stateSpace.getNumStates()];
+            for(int s = 0; s < stateSpace.getNumStates(); ++s){
+                rewards[scenario][s] = stateSpace.getReward(s) * rewardScales[scenario];
+            }
+        }
+
+        BatchSolver batchSolver = new BatchSolver(stateSpace, discountFactors, rewards);
+        batchSolver.valueIteration(EPSILON);
+
+        for(int scenario = 0; scenario < discountFactors.length; ++scenario){
+            double[] scenarioRewardArray = new double[rewardArray.length];
+            for(int cell = 0; cell < rewardArray.length; ++cell){
+                scenarioRewardArray[cell] = rewardArray[cell] * rewardScales[scenario];
+            }
+            PrecisionSolver solver = new PrecisionSolver(new CompactStateSpace(40, 50, scenarioRewardArray),
+                    discountFactors[scenario]);
+            int numIterations = solver.valueIteration(PrecisionSolver.Precision.DOUBLE, EPSILON);
+
+            String name = "scenario " + scenario + " (discount " + discountFactors[scenario] + ")";
+            if(numIterations != batchSolver.getNumIterations(scenario)){
+                System.out.println("FAIL " + name + ": " + batchSolver.getNumIterations(scenario) +
+                        " iterations, expected " + numIterations);
+                numFailures++;
+            }
+            else if(!Arrays.equals(solver.getUtilities(), batchSolver.getUtilities(scenario))){
+                System.out.println("FAIL " + name + ": different utility values");
+                numFailures++;
+            }
+            else if(!Arrays.equals(solver.getPolicy(), batchSolver.getPolicy(scenario))){
+                System.out.println("FAIL " + name + ": different policy");
+                numFailures++;
+            }
+            else{
+                System.out.println("ok   " + name + " (" + numIterations + " iterations)");
+            }
+        }
+
+        for(double discountFactor : new double[]{1.0, 1.5, -0.1, Double.NaN}){
+            try{
+                new BatchSolver(stateSpace, new double[]{0.9, discountFactor}, null);
+                System.out.println("FAIL discount factor " + discountFactor + " was accepted");
+                numFailures++;
+            } catch (IllegalArgumentException e){
+                System.out.println("ok   discount factor " + discountFactor + " rejected");
+            }
+        }
+
+        if(numFailures > 0){
+            System.out.println(numFailures + " check(s) failed");
+            System.exit(1);
+        }
+        System.out.println("All checks passed");
+    }
+}
@@ -0,0 +1,76 @@
+public class DistributedSolverTest {
+
+    /**
+     * Checks that distributed Value Iteration, with every tile swept by its own worker JVM (see TileWorker),
+     * finds the same policy as single-process Value Iteration on random GridWorlds. The worker JVMs are
+     * started with the class path of this process, so it must contain the compiled sources.
+     *
+     * Usage: java -cp out DistributedSolverTest
+     */
+
+    private static final double EPSILON = 1e-10;
+
+    /**
+     * Largest difference allowed between the utility values of the two solves. The tiles only see the
+     * values of their neighbours from the previous sweep, so the two solves stop at slightly different
+     * values.
+     */
+    private static final double UTILITY_TOLERANCE = 1e-7;
+
+    public static void main(String[] args) throws Exception {
+        int numFailures = 0;
+        numFailures += check(30, 40, 7, 2, 1);
+        numFailures += check(30, 40, 8, 2, 2);
+        numFailures += check(25, 33, 9, 1, 3);
+
+        if(numFailures > 0){
+            System.out.println(numFailures + " check(s) failed");
+            System.exit(1);
+        }
+        System.out.println("All checks passed");
+    }
+
+    /**
+     * Solve a random GridWorld with Value Iteration and with distributed Value Iteration over
+     * numTileRows x numTileCols worker JVMs, and compare the policies and utility values. Returns the
+     * number of failed checks.
+     */
+    private static int check(int numRows, int numCols, long seed, int numTileRows, int numTileCols) throws Exception {
+        double[] rewardArray = new WorldGenerator(seed, 0.25, 0.25, 0.25).generateRewardArray(numRows, numCols);
+        GridWorld gridWorld = new GridWorld(numRows, numCols, rewardArray);
+
+        gridWorld.valueIteration(false, false, EPSILON, PrecisionSolver.Precision.DOUBLE);
+        SolutionSnapshot expected = gridWorld.getValueIterationSnapshot();
+
+        gridWorld.distributedValueIteration(false, false, EPSILON, numTileRows, numTileCols);
+        SolutionSnapshot actual = gridWorld.getValueIterationSnapshot();
+
+        String name = numRows + "x" + numCols + " world over " + numTileRows + "x" + numTileCols + " workers";
+        int numFailures = 0;
+
+        if(!actual.hasSamePolicy(expected)){
+            System.out.println("FAIL " + name + ": " +
+                    PrecisionSolver.countDifferences(expected.toPolicyArray(), actual.toPolicyArray()) +
+                    " states with a different action");
+            numFailures++;
+        }
+
+        double[] expectedUtilities = expected.toUtilityArray();
+        double[] actualUtilities = actual.toUtilityArray();
+        double maxDifference = 0.0;
+        for(int cell = 0; cell < expectedUtilities.length; ++cell){
+            if(!Double.isNaN(expectedUtilities[cell])){
+                maxDifference = Math.max(maxDifference, Math.abs(expectedUtilities[cell] - actualUtilities[cell]));
+            }
+        }
+        if(maxDifference > UTILITY_TOLERANCE){
+            System.out.println("FAIL " + name + ": utility values differ by up to " + maxDifference);
+            numFailures++;
+        }
+
+        if(numFailures == 0){
+            System.out.println("ok   " + name + " (largest utility difference " + maxDifference + ")");
+        }
+        return numFailures;
+    }
+}
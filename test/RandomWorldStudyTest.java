@@ -0,0 +1,71 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class RandomWorldStudyTest {
+
+    /**
+     * Checks that the results of a pair of precision values in Main's random-world study do not depend on
+     * the pairs solved before it: solving the pairs in the order of the study and in reverse order must
+     * give the same numbers of iterations and the same policies.
+     *
+     * Usage: java -cp out RandomWorldStudyTest
+     */
+
+    public static void main(String[] args) {
+        ArrayList<Pair<Double, Double>> epsilonPairList = new ArrayList<Pair<Double, Double>>();
+        epsilonPairList.add(new Pair<Double, Double>(0.1, 0.2));
+        epsilonPairList.add(new Pair<Double, Double>(0.001, 0.001));
+        epsilonPairList.add(new Pair<Double, Double>(0.000001, 0.000001));
+
+        int numFailures = 0;
+        numFailures += check(10, 12, 3, epsilonPairList);
+        numFailures += check(16, 14, 4, epsilonPairList);
+
+        if(numFailures > 0){
+            System.out.println(numFailures + " check(s) failed");
+            System.exit(1);
+        }
+        System.out.println("All checks passed");
+    }
+
+    /**
+     * Solve the pairs of a random GridWorld forwards and backwards, and compare. Returns the number of
+     * failed checks.
+     */
+    private static int check(int numRows, int numCols, long seed, ArrayList<Pair<Double, Double>> epsilonPairList){
+        double[] rewardArray = new WorldGenerator(seed, 0.25, 0.25, 0.25).generateRewardArray(numRows, numCols);
+        CompactStateSpace stateSpace = new CompactStateSpace(numRows, numCols, rewardArray);
+        int numPairs = epsilonPairList.size();
+
+        int[][] forwardIter = new int[numPairs][];
+        int[][] forwardPolicies = new int[numPairs][];
+        for(int k = 0; k < numPairs; ++k){
+            forwardPolicies[k] = new int[stateSpace.getNumStates()];
+            forwardIter[k] = Main.solveEpsilonPair(numRows, numCols, rewardArray, epsilonPairList.get(k),
+                    stateSpace, forwardPolicies[k]);
+        }
+
+        int numFailures = 0;
+        for(int k = numPairs - 1; k >= 0; --k){
+            int[] policy = new int[stateSpace.getNumStates()];
+            int[] iter = Main.solveEpsilonPair(numRows, numCols, rewardArray, epsilonPairList.get(k), stateSpace, policy);
+
+            String name = numRows + "x" + numCols + " world, precision values (" + epsilonPairList.get(k).getKey() +
+                    ", " + epsilonPairList.get(k).getValue() + ")";
+            if(!Arrays.equals(iter, forwardIter[k])){
+                System.out.println("FAIL " + name + ": iterations " + Arrays.toString(iter) + " in reverse order, " +
+                        Arrays.toString(forwardIter[k]) + " in study order");
+                numFailures++;
+            }
+            else if(!Arrays.equals(policy, forwardPolicies[k])){
+                System.out.println("FAIL " + name + ": policy depends on the order of the pairs");
+                numFailures++;
+            }
+            else{
+                System.out.println("ok   " + name + " (Policy Iteration = " + iter[0] +
+                        ", Accelerated Value Iteration = " + iter[1] + ")");
+            }
+        }
+        return numFailures;
+    }
+}
@@ -0,0 +1,171 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.SplittableRandom;
+
+public class TransitionEstimatorTest {
+
+    /**
+     * Checks that a TransitionEstimator counts every record of a generated transition log exactly once,
+     * although the log spans many batches counted in parallel and a model is published after every batch
+     * while the counts are still coming in: after ingest returns, the numbers of ingested and rejected
+     * records and the probabilities of the latest model must match the counts the log was generated with.
+     * Also checks that the solution of the latest model is the one waited for.
+     *
+     * Usage: java -cp out TransitionEstimatorTest
+     */
+
+    private static final int NUM_ROWS = 30;
+    private static final int NUM_COLS = 40;
+
+    /**
+     * Enough records for several batches of the estimator.
+     */
+    private static final int NUM_VALID_RECORDS = 700000;
+    private static final int NUM_INVALID_RECORDS = 5000;
+
+    public static void main(String[] args) throws Exception {
+        double[] rewardArray = new WorldGenerator(11, 0.25, 0.25, 0.25).generateRewardArray(NUM_ROWS, NUM_COLS);
+        CompactStateSpace stateSpace = new CompactStateSpace(NUM_ROWS, NUM_COLS, rewardArray);
+
+        long[] counts = new long[stateSpace.getNumStates() * CompactStateSpace.NUM_DIRECTIONS * TransitionModel.NUM_OUTCOMES];
+        File logFile = File.createTempFile("transitions", ".log");
+        logFile.deleteOnExit();
+        writeLog(logFile, stateSpace, rewardArray, counts);
+
+        int numFailures = 0;
+        /**
+         * A publish interval of 0 publishes a model after every batch.
+         */
+        try(TransitionEstimator estimator = new TransitionEstimator(stateSpace, 0.99, 1e-6, 0)){
+            long numRecords = estimator.ingest(logFile);
+            numFailures += check("records read", numRecords, NUM_VALID_RECORDS + NUM_INVALID_RECORDS);
+            numFailures += check("ingested", estimator.getNumIngested(), NUM_VALID_RECORDS);
+            numFailures += check("rejected", estimator.getNumRejected(), NUM_INVALID_RECORDS);
+            numFailures += checkModel(estimator.getModel(), stateSpace, counts, 1);
+
+            /**
+             * A second pass over the same log doubles every count.
+             */
+            estimator.ingest(logFile);
+            numFailures += check("ingested after two passes", estimator.getNumIngested(), 2L * NUM_VALID_RECORDS);
+            numFailures += check("rejected after two passes", estimator.getNumRejected(), 2L * NUM_INVALID_RECORDS);
+            numFailures += checkModel(estimator.getModel(), stateSpace, counts, 2);
+
+            TransitionEstimator.Solution solution = estimator.awaitSolution();
+            numFailures += check("version of the solved model", solution.getModelVersion(), estimator.getModel().getVersion());
+        }
+
+        if(numFailures > 0){
+            System.out.println(numFailures + " check(s) failed");
+            System.exit(1);
+        }
+        System.out.println("All checks passed");
+    }
+
+    /**
+     * Write random valid transitions followed by invalid records to the log, interleaved, and add the
+     * valid ones to counts.
+     */
+    private static void writeLog(File logFile, CompactStateSpace stateSpace, double[] rewardArray, long[] counts) throws IOException {
+        SplittableRandom random = new SplittableRandom(5);
+        int numCells = NUM_ROWS * NUM_COLS;
+        int numRecords = NUM_VALID_RECORDS + NUM_INVALID_RECORDS;
+        ByteBuffer buffer = ByteBuffer.allocate(numRecords * TransitionEstimator.RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+        int numInvalid = 0;
+        for(int record = 0; record < numRecords; ++record){
+            boolean invalid = numInvalid < NUM_INVALID_RECORDS &&
+                    (long) record * NUM_INVALID_RECORDS / numRecords >= numInvalid;
+            int s = random.nextInt(stateSpace.getNumStates());
+            int action = random.nextInt(CompactStateSpace.NUM_DIRECTIONS);
+            int outcome = random.nextInt(TransitionModel.NUM_OUTCOMES);
+            int nextState = outcome == TransitionModel.STAY ? s : stateSpace.getNeighbour(s, outcome);
+
+            int fromCell = stateSpace.getCell(s);
+            int toCell = stateSpace.getCell(nextState);
+            if(invalid){
+                switch (numInvalid % 4){
+                    case 0: fromCell = numCells + numInvalid; break;
+                    case 1: action = CompactStateSpace.NUM_DIRECTIONS; break;
+                    case 2: toCell = getWallCell(rewardArray); break;
+                    default: toCell = stateSpace.getCell((s + stateSpace.getNumStates() / 2) % stateSpace.getNumStates()); break;
+                }
+                numInvalid++;
+            }
+            else{
+                /**
+                 * A move into a wall is logged as staying in place, and counted as such.
+                 */
+                int countedOutcome = nextState == s ? TransitionModel.STAY : outcome;
+                counts[(s * CompactStateSpace.NUM_DIRECTIONS + action) * TransitionModel.NUM_OUTCOMES + countedOutcome]++;
+            }
+            buffer.putInt(fromCell).putInt(action).putInt(toCell);
+        }
+        buffer.flip();
+
+        try(RandomAccessFile file = new RandomAccessFile(logFile, "rw"); FileChannel channel = file.getChannel()){
+            channel.truncate(0);
+            while(buffer.hasRemaining()){
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private static int getWallCell(double[] rewardArray){
+        for(int cell = 0; cell < rewardArray.length; ++cell){
+            if(Double.isNaN(rewardArray[cell])){
+                return cell;
+            }
+        }
+        throw new IllegalStateException("The world has no walls");
+    }
+
+    /**
+     * Compare every probability of the model with the one computed from the counts, each counted the given
+     * number of times. Returns the number of failed checks.
+     */
+    private static int checkModel(TransitionModel model, CompactStateSpace stateSpace, long[] counts, int numPasses){
+        int numMismatches = 0;
+        for(int s = 0; s < stateSpace.getNumStates(); ++s){
+            for(int action = 0; action < CompactStateSpace.NUM_DIRECTIONS; ++action){
+                int base = (s * CompactStateSpace.NUM_DIRECTIONS + action) * TransitionModel.NUM_OUTCOMES;
+                long numObservations = 0;
+                for(int outcome = 0; outcome < TransitionModel.NUM_OUTCOMES; ++outcome){
+                    numObservations += numPasses * counts[base + outcome];
+                }
+                if(model.getNumObservations(s, action) != numObservations){
+                    numMismatches++;
+                    continue;
+                }
+
+                double total = numObservations + TransitionModel.PRIOR_WEIGHT;
+                for(int outcome = 0; outcome < TransitionModel.NUM_OUTCOMES; ++outcome){
+                    double prior = outcome == TransitionModel.STAY ? 0.0 : Action.getDirectionProb(action, outcome);
+                    double probability = (numPasses * counts[base + outcome] + TransitionModel.PRIOR_WEIGHT * prior) / total;
+                    if(model.getProbability(s, action, outcome) != probability){
+                        numMismatches++;
+                    }
+                }
+            }
+        }
+        if(numMismatches > 0){
+            System.out.println("FAIL model after " + numPasses + " pass(es): " + numMismatches + " mismatches");
+            return 1;
+        }
+        System.out.println("ok   model after " + numPasses + " pass(es)");
+        return 0;
+    }
+
+    private static int check(String name, long actual, long expected){
+        if(actual != expected){
+            System.out.println("FAIL " + name + ": " + actual + ", expected " + expected);
+            return 1;
+        }
+        System.out.println("ok   " + name + " (" + actual + ")");
+        return 0;
+    }
+}